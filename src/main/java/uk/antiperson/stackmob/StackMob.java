@@ -13,6 +13,8 @@ import uk.antiperson.stackmob.commands.Commands;
 import uk.antiperson.stackmob.config.EntityTranslation;
 import uk.antiperson.stackmob.config.MainConfig;
 import uk.antiperson.stackmob.entity.EntityManager;
+import uk.antiperson.stackmob.entity.VisibilityCache;
+import uk.antiperson.stackmob.entity.death.DeathMethodRegistry;
 import uk.antiperson.stackmob.entity.traits.TraitManager;
 import uk.antiperson.stackmob.hook.HookManager;
 import uk.antiperson.stackmob.listeners.*;
@@ -20,6 +22,7 @@ import uk.antiperson.stackmob.packets.PlayerManager;
 import uk.antiperson.stackmob.scheduler.BukkitScheduler;
 import uk.antiperson.stackmob.scheduler.FoliaScheduler;
 import uk.antiperson.stackmob.scheduler.Scheduler;
+import uk.antiperson.stackmob.tasks.LoadSheddingTask;
 import uk.antiperson.stackmob.tasks.MergeTask;
 import uk.antiperson.stackmob.tasks.TagCheckTask;
 import uk.antiperson.stackmob.tasks.TagMoveTask;
@@ -47,6 +50,10 @@ public class StackMob extends JavaPlugin {
     private PlayerManager playerManager;
     private BukkitAudiences adventure;
     private Scheduler scheduler;
+    private MergeTask mergeTask;
+    private VisibilityCache visibilityCache;
+    private LoadSheddingTask loadSheddingTask;
+    private DeathMethodRegistry deathMethodRegistry;
 
     private boolean stepDamageError;
 
@@ -72,12 +79,17 @@ public class StackMob extends JavaPlugin {
         updater = new Updater(this, 29999);
         itemTools = new ItemTools(this);
         playerManager = new PlayerManager(this);
+        visibilityCache = new VisibilityCache(this);
+        loadSheddingTask = new LoadSheddingTask(this);
+        deathMethodRegistry = new DeathMethodRegistry(this);
         getLogger().info("StackMob v" + getDescription().getVersion() + " by antiPerson and contributors.");
         getLogger().info("GitHub: " + Utilities.GITHUB + " Discord: " + Utilities.DISCORD);
         getLogger().info("Loading config files...");
         try {
             getMainConfig().init();
             getEntityTranslation().reloadConfig();
+            getVisibilityCache().reload();
+            getLoadSheddingTask().reload();
         } catch (IOException e) {
             getLogger().log(Level.SEVERE, "There was a problem loading the configuration file.");
             e.printStackTrace();
@@ -100,8 +112,17 @@ public class StackMob extends JavaPlugin {
         command.setExecutor(commands);
         command.setTabCompleter(commands);
         commands.registerSubCommands();
-        int stackInterval = getMainConfig().getConfig().getStackInterval();
-        getScheduler().runGlobalTaskTimer(this, new MergeTask(this), 20, stackInterval);
+        mergeTask = new MergeTask(this);
+        getScheduler().runGlobalTaskTimer(this, mergeTask, 20, 1);
+        getScheduler().runGlobalTaskTimer(this, () -> getVisibilityCache().cleanup(), 200, 200);
+        getScheduler().runGlobalTaskTimer(this, () -> getEntityManager().registerQueued(), 1, 1);
+        int flushInterval = Math.max(1, getMainConfig().getConfig().getFlushInterval());
+        getScheduler().runGlobalTaskTimer(this, () -> getEntityManager().flushSizes(), flushInterval, flushInterval);
+        if (Utilities.isPaper() && !Utilities.IS_FOLIA) {
+            getScheduler().runGlobalTaskTimer(this, loadSheddingTask, 100, 20);
+        } else if (getMainConfig().getConfig().isLoadSheddingEnabled()) {
+            getLogger().warning("Load shedding needs the tick times provided by Paper, and is not supported on Spigot or Folia.");
+        }
         int tagInterval = getMainConfig().getConfig().getTagNearbyInterval();
         getScheduler().runGlobalTaskTimer(this, new TagCheckTask(this), 30, tagInterval);
         if (getMainConfig().getConfig().isUseArmorStand()) {
@@ -130,6 +151,10 @@ public class StackMob extends JavaPlugin {
     public void onDisable() {
         getEntityManager().unregisterAllEntities();
         Bukkit.getOnlinePlayers().forEach(player -> getPlayerManager().stopWatching(player));
+        if (getHookManager().getProtocolLibHook() != null) {
+            // the flush task won't run again, so the packets removing the tags have to be sent now
+            getHookManager().getProtocolLibHook().flush();
+        }
         if (adventure != null) {
             adventure.close();
             adventure = null;
@@ -150,19 +175,29 @@ public class StackMob extends JavaPlugin {
         registerEvent(TameListener.class);
         registerEvent(SlimeListener.class);
         registerEvent(SpawnListener.class);
+        registerEvent(SpawnerListener.class);
         registerEvent(TargetListener.class);
         registerEvent(PlayerListener.class);
         registerEvent(BeeListener.class);
         registerEvent(LeashListener.class);
         registerEvent(EquipListener.class);
+        registerEvent(TraitListener.class);
+        registerEvent(BlockChangeListener.class);
+        registerEvent(SaveListener.class);
         if (Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_20_4)) {
             registerEvent(KnockbackListener.class);
         }
+        if (Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_17)) {
+            registerEvent(EntitiesLoadListener.class);
+        }
         if (Utilities.isPaper()) {
+            registerEvent(MoveListener.class);
             registerEvent(RemoveListener.class);
             return;
         }
-        registerEvent(ChunkListener.class);
+        if (!Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_17)) {
+            registerEvent(ChunkListener.class);
+        }
     }
 
     private void registerEvent(Class<? extends Listener> clazz) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
@@ -237,4 +272,20 @@ public class StackMob extends JavaPlugin {
     public Scheduler getScheduler() {
         return scheduler;
     }
+
+    public MergeTask getMergeTask() {
+        return mergeTask;
+    }
+
+    public VisibilityCache getVisibilityCache() {
+        return visibilityCache;
+    }
+
+    public LoadSheddingTask getLoadSheddingTask() {
+        return loadSheddingTask;
+    }
+
+    public DeathMethodRegistry getDeathMethodRegistry() {
+        return deathMethodRegistry;
+    }
 }
@@ -4,7 +4,6 @@ import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.entity.Animals;
 import org.bukkit.entity.Entity;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Mob;
 import org.bukkit.entity.Monster;
 import org.bukkit.entity.Player;
@@ -13,6 +12,7 @@ import uk.antiperson.stackmob.commands.*;
 import uk.antiperson.stackmob.entity.StackEntity;
 import uk.antiperson.stackmob.utils.Utilities;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -63,12 +63,8 @@ public class Remove extends SubCommand {
                 break;
         }
         for (Chunk chunk : chunks) {
-            for (Entity entity : chunk.getEntities()) {
-                if (!function.apply(entity)) {
-                    continue;
-                }
-                StackEntity stackEntity = sm.getEntityManager().getStackEntity((LivingEntity) entity);
-                if (stackEntity == null) {
+            for (StackEntity stackEntity : new ArrayList<>(sm.getEntityManager().getStackEntities(chunk))) {
+                if (!function.apply(stackEntity.getEntity())) {
                     continue;
                 }
                 stackEntity.remove();
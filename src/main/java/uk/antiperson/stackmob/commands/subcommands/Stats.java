@@ -6,9 +6,13 @@ import uk.antiperson.stackmob.commands.CommandArgument;
 import uk.antiperson.stackmob.commands.CommandMetadata;
 import uk.antiperson.stackmob.commands.SubCommand;
 import uk.antiperson.stackmob.commands.User;
+import uk.antiperson.stackmob.config.EntityConfig;
 import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.entity.VisibilityCache;
 import uk.antiperson.stackmob.packets.PlayerWatcher;
 import uk.antiperson.stackmob.packets.TagHandler;
+import uk.antiperson.stackmob.tasks.LoadSheddingTask;
+import uk.antiperson.stackmob.tasks.MergeTask;
 
 import java.util.Arrays;
 
@@ -17,7 +21,7 @@ public class Stats extends SubCommand {
 
     private final StackMob sm;
     public Stats(StackMob sm) {
-        super(CommandArgument.construct(ArgumentType.STRING, false, Arrays.asList("mobs", "players")));
+        super(CommandArgument.construct(ArgumentType.STRING, false, Arrays.asList("mobs", "players", "merge", "load")));
         this.sm = sm;
     }
 
@@ -30,6 +34,12 @@ public class Stats extends SubCommand {
             case "players":
                 sendPlayerStats(sender);
                 break;
+            case "merge":
+                sendMergeStats(sender);
+                break;
+            case "load":
+                sendLoadStats(sender);
+                break;
         }
         return false;
     }
@@ -50,17 +60,73 @@ public class Stats extends SubCommand {
         sender.sendInfo("Stacking statistics:");
         sender.sendRawMessage("Total stack entities: " + sm.getEntityManager().getStackEntities().size() + " (" + total + " single entities.)");
         sender.sendRawMessage("Full stacks: " + full + " Waiting to stack: " + waiting);
+        long sizeChanges = sm.getEntityManager().getSizeChanges();
+        long sizeWrites = sm.getEntityManager().getSizeWrites();
+        sender.sendRawMessage("Stack size changes: " + sizeChanges + " Saved to entities: " + sizeWrites
+                + " (" + Math.max(0, sizeChanges - sizeWrites) + " writes avoided, " + sm.getEntityManager().getUnsavedCount() + " waiting to be saved.)");
+        sender.sendRawMessage("Chunks with stacks: " + sm.getEntityManager().getChunkCount() + " (most in one chunk: " + sm.getEntityManager().getMostInChunk() + ")");
+        double passTime = sm.getMergeTask().getLastPassTime() / 1000000D;
+        sender.sendRawMessage("Last merge pass took " + String.format("%.2f", passTime) + "ms.");
+        VisibilityCache visibilityCache = sm.getVisibilityCache();
+        long lookups = visibilityCache.getLookups();
+        double hitRate = lookups == 0 ? 0 : (visibilityCache.getHits() * 100D) / lookups;
+        sender.sendRawMessage("Line of sight cache: " + String.format("%.1f", hitRate) + "% hit rate over " + lookups + " checks (" + visibilityCache.getSize() + " cached.)");
+    }
+
+    private void sendMergeStats(User sender) {
+        MergeTask mergeTask = sm.getMergeTask();
+        EntityConfig config = sm.getMainConfig().getConfig();
+        double passTime = mergeTask.getLastPassTime() / 1000000D;
+        sender.sendInfo("Merge statistics:");
+        sender.sendRawMessage("Mode: " + config.getMergeMode() + " Interval: " + config.getStackInterval() + " ticks (unless set for the type in custom.)");
+        if (config.isDirtyTracking()) {
+            sender.sendRawMessage("Dirty tracking: " + sm.getEntityManager().getDirtyCount() + " stacks queued to be checked.");
+        }
+        if (config.getMergeMode() == MergeTask.MergeMode.PLANNED) {
+            double planTime = mergeTask.getLastPlanTime() / 1000000D;
+            sender.sendRawMessage("Last merge pass took " + String.format("%.2f", passTime) + "ms on the main thread.");
+            sender.sendRawMessage("Last plan took " + String.format("%.2f", planTime) + "ms off the main thread.");
+            return;
+        }
+        if (config.getMergeMode() != MergeTask.MergeMode.SLICED) {
+            sender.sendRawMessage("Last merge pass took " + String.format("%.2f", passTime) + "ms.");
+            return;
+        }
+        sender.sendRawMessage("Budget: " + config.getSliceBudget() + "ms per tick.");
+        sender.sendRawMessage("Last sweep took " + mergeTask.getLastSweepTicks() + " ticks (" + String.format("%.2f", passTime) + "ms in total.)");
+        sender.sendRawMessage("Current sweep: " + mergeTask.getSweepProgress() + "/" + mergeTask.getSweepSize() + " stacks checked, " + mergeTask.getLastTickProcessed() + " in the last tick.");
+    }
+
+    private void sendLoadStats(User sender) {
+        LoadSheddingTask loadSheddingTask = sm.getLoadSheddingTask();
+        sender.sendInfo("Load shedding statistics:");
+        if (!sm.getMainConfig().getConfig().isLoadSheddingEnabled()) {
+            sender.sendRawMessage("Load shedding is not enabled.");
+            return;
+        }
+        sender.sendRawMessage("Server tick time: " + String.format("%.1f", loadSheddingTask.getMspt()) + "ms");
+        sender.sendRawMessage("Steps applied: " + loadSheddingTask.getLevel() + "/" + loadSheddingTask.getLadder().size()
+                + " " + loadSheddingTask.getLadder().subList(0, loadSheddingTask.getLevel()));
+        for (String transition : loadSheddingTask.getHistory()) {
+            sender.sendRawMessage(transition);
+        }
     }
 
     private void sendPlayerStats(User sender) {
         int trackingOverall = 0;
         int trackingStacks = 0;
         int visible = 0;
+        long movesSent = 0;
+        long movesSuppressed = 0;
+        int candidates = 0;
         for (PlayerWatcher playerWatcher : sm.getPlayerManager().geWatchers()) {
             trackingOverall += 1;
             if (!playerWatcher.getPlayer().equals(sender.getSender())) {
                 continue;
             }
+            movesSent = playerWatcher.getMovePacketsSent();
+            movesSuppressed = playerWatcher.getMovePacketsSuppressed();
+            candidates = playerWatcher.getLastCandidates();
             for (TagHandler tagHandler : playerWatcher.getTagHandlers()) {
                 trackingStacks += 1;
                 if (tagHandler.isTagVisible()) {
@@ -73,5 +139,12 @@ public class Stats extends SubCommand {
         sender.sendRawMessage("We are tracking " + trackingOverall + " players.");
         sender.sendRawMessage("You have " + trackingStacks + " stacks in range. " + visible + " should have visible tags.");
         sender.sendRawMessage(notVisible + " should have hidden tags.");
+        int maxTags = sm.getMainConfig().getConfig().getMaxTags();
+        if (maxTags > 0) {
+            sender.sendRawMessage("Tag budget: " + trackingStacks + "/" + maxTags + " used (" + Math.max(0, candidates - trackingStacks) + " stacks over budget.)");
+        }
+        if (sm.getMainConfig().getConfig().isUseArmorStand()) {
+            sender.sendRawMessage("Tag move packets sent: " + movesSent + " Suppressed: " + movesSuppressed);
+        }
     }
 }
@@ -76,6 +76,10 @@ public abstract class ConfigFile implements Config {
         return fileCon.getIntegerList(path);
     }
 
+    public List<String> getStringList(String path) {
+        return fileCon.getStringList(path);
+    }
+
     public boolean isFileLoaded() {
         return fileCon != null;
     }
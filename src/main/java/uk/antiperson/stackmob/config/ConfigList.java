@@ -1,10 +1,13 @@
 package uk.antiperson.stackmob.config;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ConfigList {
 
     private final List<?> list;
+    private final Set<?> set;
     private final String path;
     private final boolean inverted;
     private final ConfigFile configFile;
@@ -12,6 +15,7 @@ public class ConfigList {
     public ConfigList(ConfigFile configFile, List<?> list, String path, boolean inverted) {
         this.configFile = configFile;
         this.list = list;
+        this.set = new HashSet<>(list);
         this.path = path;
         this.inverted = inverted;
     }
@@ -33,7 +37,15 @@ public class ConfigList {
     }
 
     public boolean rawContains(String item) {
-        return list.contains(item);
+        return set.contains(item);
+    }
+
+    public List<?> getItems() {
+        return list;
+    }
+
+    public String getPath() {
+        return path;
     }
 
     public List<Integer> asIntList() {
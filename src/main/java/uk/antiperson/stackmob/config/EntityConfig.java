@@ -1,5 +1,6 @@
 package uk.antiperson.stackmob.config;
 
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.entity.Animals;
 import org.bukkit.entity.Boss;
@@ -17,33 +18,256 @@ import org.bukkit.event.entity.EntityKnockbackEvent;
 import org.stringtemplate.v4.ST;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.entity.TagTemplate;
 import uk.antiperson.stackmob.entity.death.DeathType;
 import uk.antiperson.stackmob.hook.hooks.JobsHook;
+import uk.antiperson.stackmob.packets.PlayerWatcher;
+import uk.antiperson.stackmob.packets.TagDetail;
+import uk.antiperson.stackmob.tasks.MergeTask;
 import uk.antiperson.stackmob.utils.Utilities;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 public class EntityConfig {
 
+    // names given by hooks can be different for every entity, so only the most recently used templates are kept
+    private static final int MAX_CACHED_TEMPLATES = 256;
+
     private final Map<String, ConfigValue> valueMap;
+    private final Map<String, ConfigList> lists;
+    // keyed by the type name that has been filled in, as hooks can give entities of the same type different names
+    private final Map<String, TagTemplate> tagTemplates;
     private final EntityType type;
     private final StackMob sm;
+    // settings which are read often, worked out once when the config is loaded
+    private int maxStack;
+    private boolean stackThresholdEnabled;
+    private int stackThreshold;
+    private Integer[] stackRadius;
+    private int stackInterval;
+    private MergeTask.MergeMode mergeMode;
+    private double sliceBudget;
+    private boolean checkHasMoved;
+    private double checkHasMovedDistance;
+    private int checkHasMovedTimeout;
+    private boolean checkCanSee;
+    private boolean stackOnSpawn;
+    private boolean absorbOnSpawn;
+    private boolean dirtyTracking;
+    private double dirtyMoveDistance;
+    private boolean writeBehind;
+    private String tagFormat;
+    private int tagThreshold;
+    private StackEntity.TagMode tagMode;
+    private Integer[] tagNearbyRadius;
+    private int tagNearbyInterval;
+    private boolean tagNearbyRayTrace;
+    private boolean useArmorStand;
+    private boolean useTextDisplay;
+    private TagDetail tagDetail;
+    private Map<String, Boolean> traitsEnabled;
+    private JobsHook.JobHookMode jobHookMode;
+    private boolean dropMultiEnabled;
+    private boolean dropLootTables;
+    private boolean slimeMultiEnabled;
+    private boolean expMultiEnabled;
+    private double expMinBound;
+    private double expMaxBound;
+    private boolean playerStatMulti;
+    private int maxDeathStep;
+    private int minDeathStep;
+    private boolean skipDeathAnimation;
+    private int maxTags;
+    private PlayerWatcher.TagPriority tagPriority;
+    private double armorstandOffset;
+    private boolean waitingEnabled;
+    private boolean waitingTypes;
+    private int waitingTime;
+    private StackEntity.EquipItemMode equipItemMode;
+    private NameTagStackMode nameTagStackMode;
+    private NameTagInteractMode nameTagInteractMode;
+    private Map<EventType, ListenerMode> listenerModes;
+    private Map<EventType, Integer> eventLimits;
+    private Collection<DeathType> deathSection;
+    // lists which are checked often, resolved into sets when the config is loaded
+    private boolean typeBlacklisted;
+    private boolean dropTypeBlacklisted;
+    private boolean expTypeBlacklisted;
+    private boolean targetingDisabledTypes;
+    private boolean knockbackDisabledTypes;
+    private EnumList<CreatureSpawnEvent.SpawnReason> reasonBlacklist;
+    private EnumList<CreatureSpawnEvent.SpawnReason> waitingReasons;
+    private EnumList<CreatureSpawnEvent.SpawnReason> targetingDisabledReasons;
+    private EnumList<CreatureSpawnEvent.SpawnReason> knockbackDisabledReasons;
+    private EnumList<EntityKnockbackEvent.KnockbackCause> knockbackDisabledCauses;
+    private EnumList<EntityDamageEvent.DamageCause> dropReasonBlacklist;
+    private EnumList<Material> dropItemBlacklist;
+    private EnumList<Material> dropItemOnePer;
+    private Map<DeathType, EnumList<EntityDamageEvent.DamageCause>> deathReasonBlacklists;
+    private Map<DeathType, EnumList<CreatureSpawnEvent.SpawnReason>> deathSpawnReasonBlacklists;
+    private Set<DeathType> deathTypeBlacklisted;
+    // the death type for each damage cause and spawn reason, the last row and column are for when there is none
+    private EnumTable<EntityDamageEvent.DamageCause, CreatureSpawnEvent.SpawnReason, DeathType> deathTable;
 
     public EntityConfig(StackMob sm, EntityType type) {
         this.sm = sm;
         this.type = type;
         this.valueMap = new HashMap<>();
+        this.lists = new HashMap<>();
+        this.tagTemplates = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TagTemplate> eldest) {
+                return size() > MAX_CACHED_TEMPLATES;
+            }
+        });
     }
 
     public void put(String path, ConfigValue value) {
         valueMap.put(path, value);
     }
 
+    /**
+     * Works out the settings which are read often, so that getting them does not need to look up the config value.
+     * This needs to be called once all the values have been put, before this config is used.
+     * @param problems where to add a message for each problem found in the config, such as an unknown list item.
+     */
+    public void compile(Collection<String> problems) {
+        for (Map.Entry<String, ConfigValue> entry : valueMap.entrySet()) {
+            if (entry.getValue().getValue() instanceof List<?>) {
+                lists.put(entry.getKey(), entry.getValue().getList());
+            }
+        }
+        maxStack = getInt("stack.max-size");
+        stackThresholdEnabled = getBoolean("stack.threshold.enabled");
+        stackThreshold = getInt("stack.threshold.amount");
+        stackRadius = getIntList("stack.merge-range").toArray(new Integer[2]);
+        stackInterval = getInt("stack.interval");
+        mergeMode = MergeTask.MergeMode.valueOf(getString("stack.merge-mode"));
+        sliceBudget = getDouble("stack.slice-budget");
+        checkHasMoved = getBoolean("stack.check-location.enabled");
+        checkHasMovedDistance = getDouble("stack.check-location.distance");
+        checkHasMovedTimeout = getInt("stack.check-location.timeout");
+        checkCanSee = getBoolean("stack.line-of-sight");
+        stackOnSpawn = getBoolean("stack.on-spawn");
+        absorbOnSpawn = getBoolean("stack.absorb-on-spawn");
+        dirtyTracking = getBoolean("stack.dirty-tracking.enabled");
+        dirtyMoveDistance = getDouble("stack.dirty-tracking.move-distance");
+        writeBehind = getBoolean("persistence.write-behind");
+        tagFormat = getString("display-name.format");
+        tagThreshold = getInt("display-name.threshold");
+        tagMode = StackEntity.TagMode.valueOf(getString("display-name.visibility"));
+        tagNearbyRadius = getIntList("display-name.nearby.range").toArray(new Integer[2]);
+        tagNearbyInterval = getInt("display-name.nearby.interval");
+        tagNearbyRayTrace = getBoolean("display-name.nearby.ray-trace");
+        useArmorStand = getBoolean("display-name.nearby.armorstand.enabled");
+        armorstandOffset = getDouble("display-name.nearby.armorstand.offset");
+        useTextDisplay = getBoolean("display-name.nearby.armorstand.text-display") && Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_20_2);
+        maxTags = getInt("display-name.nearby.max-tags");
+        tagPriority = PlayerWatcher.TagPriority.valueOf(getString("display-name.nearby.max-tags-priority"));
+        tagDetail = null;
+        if (getBoolean("display-name.nearby.level-of-detail.enabled")) {
+            tagDetail = TagDetail.of(getIntList("display-name.nearby.level-of-detail.distances"),
+                    getIntList("display-name.nearby.level-of-detail.check-intervals"),
+                    getIntList("display-name.nearby.level-of-detail.move-intervals"),
+                    getInt("display-name.nearby.level-of-detail.ray-trace-distance"),
+                    getDouble("display-name.nearby.level-of-detail.view-cone"), problems);
+        }
+        waitingEnabled = getBoolean("wait-to-stack.enabled");
+        waitingTypes = isEntityTypeInList("wait-to-stack.types-whitelist", problems);
+        waitingTime = getInt("wait-to-stack.wait-time");
+        equipItemMode = StackEntity.EquipItemMode.valueOf(getString("events.equip.mode"));
+        nameTagStackMode = NameTagStackMode.valueOf(getString("stack.nametag-mode"));
+        nameTagInteractMode = NameTagInteractMode.valueOf(getString("events.nametag.mode"));
+        listenerModes = new EnumMap<>(EventType.class);
+        eventLimits = new EnumMap<>(EventType.class);
+        for (EventType eventType : EventType.values()) {
+            listenerModes.put(eventType, ListenerMode.valueOf(getString("events." + eventType.getConfigKey() + ".mode")));
+            eventLimits.put(eventType, getInt("events." + eventType.getConfigKey() + ".limit"));
+        }
+        TreeMap<Integer, DeathType> deathTypes = new TreeMap<>();
+        for (DeathType deathType : DeathType.values()) {
+            deathTypes.put(getInt("death." + deathType + ".priority"), deathType);
+        }
+        deathSection = Collections.unmodifiableCollection(deathTypes.values());
+        traitsEnabled = new HashMap<>();
+        for (String path : valueMap.keySet()) {
+            if (path.startsWith("traits.")) {
+                traitsEnabled.put(path.substring("traits.".length()), getBoolean(path));
+            }
+        }
+        jobHookMode = JobsHook.JobHookMode.valueOf(getString("hooks.jobs.mode"));
+        dropMultiEnabled = getBoolean("drops.enabled");
+        dropLootTables = getBoolean("drops.use-loot-tables");
+        slimeMultiEnabled = getBoolean("events.multiply.slime-split");
+        expMultiEnabled = getBoolean("experience.enabled");
+        expMinBound = getDouble("experience.multiplier-min");
+        expMaxBound = getDouble("experience.multiplier-max");
+        playerStatMulti = getBoolean("player-stats");
+        maxDeathStep = getInt("death.STEP.max-step");
+        minDeathStep = getInt("death.STEP.min-step");
+        skipDeathAnimation = getBoolean("death.skip-animation") && Utilities.isPaper();
+        compileLists(problems);
+    }
+
+    private void compileLists(Collection<String> problems) {
+        typeBlacklisted = isEntityTypeInList("types-blacklist", problems);
+        dropTypeBlacklisted = isEntityTypeInList("drops.type-blacklist", problems);
+        expTypeBlacklisted = getList("experience.type-blacklist").contains(type.toString());
+        targetingDisabledTypes = isEntityTypeInList("disable-targeting.type-blacklist", problems);
+        knockbackDisabledTypes = isEntityTypeInList("disable-knockback.type-blacklist", problems);
+        reasonBlacklist = getEnumList(CreatureSpawnEvent.SpawnReason.class, "reason-blacklist", problems);
+        waitingReasons = getEnumList(CreatureSpawnEvent.SpawnReason.class, "wait-to-stack.reasons-whitelist", problems);
+        targetingDisabledReasons = getEnumList(CreatureSpawnEvent.SpawnReason.class, "disable-targeting.reason-blacklist", problems);
+        knockbackDisabledReasons = getEnumList(CreatureSpawnEvent.SpawnReason.class, "disable-knockback.reason-blacklist", problems);
+        // the knockback event does not exist on older versions
+        if (Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_20_4)) {
+            knockbackDisabledCauses = getEnumList(EntityKnockbackEvent.KnockbackCause.class, "disable-knockback.cause-blacklist", problems);
+        }
+        dropReasonBlacklist = getEnumList(EntityDamageEvent.DamageCause.class, "drops.reason-blacklist", problems);
+        dropItemBlacklist = getEnumList(Material.class, "drops.item-blacklist", problems);
+        dropItemOnePer = getEnumList(Material.class, "drops.one-per-stack", problems);
+        deathReasonBlacklists = new EnumMap<>(DeathType.class);
+        deathSpawnReasonBlacklists = new EnumMap<>(DeathType.class);
+        deathTypeBlacklisted = EnumSet.noneOf(DeathType.class);
+        for (DeathType deathType : DeathType.values()) {
+            deathReasonBlacklists.put(deathType, getEnumList(EntityDamageEvent.DamageCause.class, "death." + deathType + ".reason-blacklist", problems));
+            deathSpawnReasonBlacklists.put(deathType, getEnumList(CreatureSpawnEvent.SpawnReason.class, "death." + deathType + ".spawn-reason-blacklist", problems));
+            if (isEntityTypeInList("death." + deathType + ".type-blacklist", problems)) {
+                deathTypeBlacklisted.add(deathType);
+            }
+        }
+        deathTable = EnumTable.of(EntityDamageEvent.DamageCause.class, CreatureSpawnEvent.SpawnReason.class, this::resolveDeathType);
+    }
+
+    private DeathType resolveDeathType(EntityDamageEvent.DamageCause cause, CreatureSpawnEvent.SpawnReason reason) {
+        for (DeathType type : getDeathSection()) {
+            if (deathTypeBlacklisted.contains(type)) {
+                continue;
+            }
+            if (deathReasonBlacklists.get(type).contains(cause)) {
+                continue;
+            }
+            if (deathSpawnReasonBlacklists.get(type).contains(reason)) {
+                continue;
+            }
+            return type;
+        }
+        return null;
+    }
+
+    private <E extends Enum<E>> EnumList<E> getEnumList(Class<E> enumClass, String path, Collection<String> problems) {
+        return EnumList.of(enumClass, getList(path), problems);
+    }
+
     public ConfigValue getConfigValue(String path) {
         ConfigValue configValue = valueMap.get(path);
         if (configValue == null) {
@@ -78,80 +302,122 @@ public class EntityConfig {
     }
 
     public ConfigList getList(String path) {
+        ConfigList list = lists.get(path);
+        if (list != null) {
+            return list;
+        }
         ConfigValue configValue = getConfigValue(path);
         return configValue == null ? new ConfigList(null, Collections.emptyList(), path, false) : configValue.getList();
     }
 
     public int getMaxStack() {
-        return getInt("stack.max-size");
+        return maxStack;
     }
 
     public boolean getStackThresholdEnabled() {
-        return getBoolean( "stack.threshold.enabled");
+        return stackThresholdEnabled;
     }
 
     public int getStackThreshold() {
-        return getInt( "stack.threshold.amount");
+        return stackThreshold;
     }
 
     public Integer[] getStackRadius() {
-        return getIntList("stack.merge-range").toArray(new Integer[2]);
+        return stackRadius;
     }
 
     public int getStackInterval() {
-        return getInt("stack.interval");
+        return stackInterval;
+    }
+
+    public MergeTask.MergeMode getMergeMode() {
+        return mergeMode;
+    }
+
+    public double getSliceBudget() {
+        return sliceBudget;
     }
 
     public boolean isCheckHasMoved() {
-        return getBoolean("stack.check-location.enabled");
+        return checkHasMoved;
     }
 
     public double getCheckHasMovedDistance() {
-        return getDouble("stack.check-location.distance");
+        return checkHasMovedDistance;
     }
 
     public int getCheckHasMovedTimeout() {
-        return getInt("stack.check-location.timeout");
+        return checkHasMovedTimeout;
     }
 
     public String getTagFormat() {
-        return getString("display-name.format");
+        return tagFormat;
+    }
+
+    /**
+     * Gets the display name template for this type, with the given type name filled in.
+     * @param typeName the name of the type to use in the display name.
+     * @return the display name template for this type.
+     */
+    public TagTemplate getTagTemplate(String typeName) {
+        return tagTemplates.computeIfAbsent(typeName, name -> new TagTemplate(tagFormat, name, maxStack));
     }
 
     public int getTagThreshold() {
-        return getInt( "display-name.threshold");
+        return tagThreshold;
     }
 
     public StackEntity.TagMode getTagMode() {
-        StackEntity.TagMode tagMode = StackEntity.TagMode.valueOf(getString("display-name.visibility"));
-        if (sm.getHookManager().getProtocolLibHook() == null && tagMode == StackEntity.TagMode.NEARBY) {
-            tagMode = StackEntity.TagMode.HOVER;
+        // hooks are registered after the config is loaded, so this can not be worked out in advance
+        if (tagMode == StackEntity.TagMode.NEARBY && sm.getHookManager().getProtocolLibHook() == null) {
+            return StackEntity.TagMode.HOVER;
         }
         return tagMode;
     }
 
     public Integer[] getTagNearbyRadius() {
-        return getIntList("display-name.nearby.range").toArray(new Integer[2]);
+        return tagNearbyRadius;
     }
 
     public int getTagNearbyInterval() {
-        return getInt("display-name.nearby.interval");
+        return tagNearbyInterval;
     }
 
     public boolean isTagNearbyRayTrace() {
-        return getBoolean("display-name.nearby.ray-trace");
+        return tagNearbyRayTrace;
     }
 
     public boolean isUseArmorStand() {
-        return getBoolean("display-name.nearby.armorstand.enabled");
+        return useArmorStand;
     }
 
     public double getArmorstandOffset() {
-        return getDouble("display-name.nearby.armorstand.offset");
+        return armorstandOffset;
+    }
+
+    public boolean isUseTextDisplay() {
+        return useTextDisplay;
+    }
+
+    public int getMaxTags() {
+        return maxTags;
+    }
+
+    public PlayerWatcher.TagPriority getTagPriority() {
+        return tagPriority;
+    }
+
+    /**
+     * Gets the distance bands for nearby tags.
+     * @return the distance bands for nearby tags, or null if level of detail is disabled.
+     */
+    public TagDetail getTagDetail() {
+        return tagDetail;
     }
 
     public boolean isTraitEnabled(String traitKey) {
-        return getBoolean("traits." + traitKey);
+        Boolean enabled = traitsEnabled.get(traitKey);
+        return enabled != null ? enabled : getBoolean("traits." + traitKey);
     }
 
     public boolean isHookEnabled(String traitKey) {
@@ -159,107 +425,107 @@ public class EntityConfig {
     }
 
     public JobsHook.JobHookMode getJobHookMode() {
-        return JobsHook.JobHookMode.valueOf(getString("hooks.jobs.mode"));
+        return jobHookMode;
     }
 
     public boolean isDropMultiEnabled() {
-        return getBoolean( "drops.enabled");
+        return dropMultiEnabled;
     }
 
     public boolean isDropLootTables() {
-        return getBoolean( "drops.use-loot-tables");
+        return dropLootTables;
     }
 
     public boolean isSlimeMultiEnabled() {
-        return getBoolean( "events.multiply.slime-split");
+        return slimeMultiEnabled;
     }
 
     public boolean isDropTypeBlacklist() {
-        return isEntityTypeInList("drops.type-blacklist");
+        return dropTypeBlacklisted;
     }
 
     public boolean isDropReasonBlacklist(EntityDamageEvent.DamageCause damageCause) {
-        return getList("drops.reason-blacklist").contains(damageCause.toString());
+        return dropReasonBlacklist.contains(damageCause);
     }
 
-    public ConfigList getDropItemBlacklist() {
-        return getList("drops.item-blacklist");
+    public EnumList<Material> getDropItemBlacklist() {
+        return dropItemBlacklist;
     }
 
-    public ConfigList getDropItemOnePer() {
-        return getList("drops.one-per-stack");
+    public EnumList<Material> getDropItemOnePer() {
+        return dropItemOnePer;
     }
 
     public boolean isExpMultiEnabled() {
-        return getBoolean( "experience.enabled");
+        return expMultiEnabled;
     }
 
     public boolean isExpTypeBlacklist() {
-        return getList("experience.type-blacklist").contains(type.toString());
+        return expTypeBlacklisted;
     }
 
     public double getExpMinBound() {
-        return getDouble("experience.multiplier-min");
+        return expMinBound;
     }
 
     public double getExpMaxBound() {
-        return getDouble("experience.multiplier-max");
+        return expMaxBound;
     }
 
     public boolean isPlayerStatMulti() {
-        return getBoolean( "player-stats");
+        return playerStatMulti;
     }
 
     public boolean isWaitingEnabled() {
-        return getBoolean( "wait-to-stack.enabled");
+        return waitingEnabled;
     }
 
     public boolean isWaitingTypes() {
-        return isEntityTypeInList("wait-to-stack.types-whitelist");
+        return waitingTypes;
     }
 
     public boolean isWaitingReasons(CreatureSpawnEvent.SpawnReason spawnReason) {
-        return getList("wait-to-stack.reasons-whitelist").contains(spawnReason.toString());
+        return waitingReasons.contains(spawnReason);
     }
 
     public int getWaitingTime() {
-        return getInt("wait-to-stack.wait-time");
+        return waitingTime;
     }
 
     public int getMaxDeathStep() {
-        return getInt( "death.STEP.max-step");
+        return maxDeathStep;
     }
 
     public int getMinDeathStep() {
-        return getInt( "death.STEP.min-step");
+        return minDeathStep;
     }
 
     public boolean isTargetingDisabledTypes() {
-        return isEntityTypeInList("disable-targeting.type-blacklist");
+        return targetingDisabledTypes;
     }
 
     public boolean isTargetingDisabledReasons(CreatureSpawnEvent.SpawnReason spawnReason) {
-        return getList("disable-targeting.reason-blacklist").contains(spawnReason.toString());
+        return targetingDisabledReasons.contains(spawnReason);
     }
 
     public boolean isKnockbackDisabledTypes() {
-        return isEntityTypeInList("disable-knockback.type-blacklist");
+        return knockbackDisabledTypes;
     }
 
     public boolean isKnockbackDisabledReasons(CreatureSpawnEvent.SpawnReason spawnReason) {
-        return getList("disable-knockback.reason-blacklist").contains(spawnReason.toString());
+        return knockbackDisabledReasons.contains(spawnReason);
     }
 
     public boolean isKnockbackDisabledCause(EntityKnockbackEvent.KnockbackCause cause) {
-        return getList("disable-knockback.cause-blacklist").contains(cause.toString());
+        return knockbackDisabledCauses != null && knockbackDisabledCauses.contains(cause);
     }
 
     public ListenerMode getListenerMode(EventType eventType) {
-        return ListenerMode.valueOf(getString("events." + eventType.getConfigKey() + ".mode"));
+        return listenerModes.get(eventType);
     }
 
     public int getEventMultiplyLimit(EventType eventType, int stackSize) {
-        int limit = getInt( "events." + eventType.getConfigKey() + ".limit");
+        int limit = eventLimits.get(eventType);
         return limit == -1 ? stackSize : Math.min(stackSize, limit);
     }
 
@@ -273,55 +539,53 @@ public class EntityConfig {
     }
 
     public boolean isEntityBlacklisted(LivingEntity entity, CreatureSpawnEvent.SpawnReason reason) {
-        if (isEntityTypeInList("types-blacklist")) {
+        if (typeBlacklisted) {
             return true;
         }
-        if (getList("reason-blacklist").contains(reason.toString())) {
+        if (reasonBlacklist.contains(reason)) {
             return true;
         }
         return isWorldBlacklisted(entity.getWorld());
     }
 
     public DeathType getDeathType(LivingEntity dead) {
-        for (DeathType type : getDeathSection()) {
-            ConfigList reasons = getList("death." + type + ".reason-blacklist");
-            if (dead.getLastDamageCause() != null && reasons.contains(dead.getLastDamageCause().getCause().toString())) {
-                continue;
-            }
-            ConfigList spawnReasons = getList("death." + type + ".spawn-reason-blacklist");
-            if (Utilities.isPaper() && spawnReasons.contains(dead.getEntitySpawnReason().toString())) {
-                continue;
-            }
-            if (isEntityTypeInList("death." + type + ".type-blacklist")) {
-                continue;
-            }
-            return type;
+        EntityDamageEvent lastDamageCause = dead.getLastDamageCause();
+        EntityDamageEvent.DamageCause cause = lastDamageCause == null ? null : lastDamageCause.getCause();
+        CreatureSpawnEvent.SpawnReason reason = Utilities.isPaper() ? dead.getEntitySpawnReason() : null;
+        DeathType type = deathTable.get(cause, reason);
+        if (type == null) {
+            throw new UnsupportedOperationException("Configuration error - unable to determine death type!");
         }
-        throw new UnsupportedOperationException("Configuration error - unable to determine death type!");
+        return type;
     }
 
     private Collection<DeathType> getDeathSection() {
-        TreeMap<Integer, DeathType> array = new TreeMap<>();
-        for (DeathType type : DeathType.values()) {
-            array.put(getInt("death." + type + ".priority"), type);
-        }
-        return array.values();
+        return deathSection;
     }
 
     public boolean isSkipDeathAnimation() {
-        return getBoolean( "death.skip-animation") && Utilities.isPaper();
+        return skipDeathAnimation;
     }
 
     public StackEntity.EquipItemMode getEquipItemMode() {
-        return StackEntity.EquipItemMode.valueOf(getString("events.equip.mode"));
+        return equipItemMode;
     }
 
     public boolean isStackOnSpawn() {
-        return getBoolean("stack.on-spawn");
+        return stackOnSpawn;
+    }
+
+    public boolean isAbsorbOnSpawn() {
+        return absorbOnSpawn;
     }
 
-    private boolean isEntityTypeInList(String path) {
+    private boolean isEntityTypeInList(String path, Collection<String> problems) {
         ConfigList list = getList(path);
+        for (Object item : list.getItems()) {
+            if (!isEntityTypeName(String.valueOf(item))) {
+                problems.add("Unknown entity type or group '" + item + "' in list " + list.getPath() + ". It will be ignored.");
+            }
+        }
         if (list.isInverted() && list.rawContains(type.toString())) {
             return false;
         }
@@ -336,12 +600,25 @@ public class EntityConfig {
         return list.contains(type.toString());
     }
 
+    private static boolean isEntityTypeName(String name) {
+        for (EntityGrouping entityGrouping : EntityGrouping.values()) {
+            if (entityGrouping.toString().equals(name)) {
+                return true;
+            }
+        }
+        for (EntityType entityType : EntityType.values()) {
+            if (entityType.toString().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public NameTagInteractMode getNameTagInteractMode() {
-        return NameTagInteractMode.valueOf(getString("events.nametag.mode"));
+        return nameTagInteractMode;
     }
 
     public NameTagStackMode getNameTagStackMode() {
-        NameTagStackMode nameTagStackMode = NameTagStackMode.valueOf(getString("stack.nametag-mode"));
         if (nameTagStackMode == NameTagStackMode.JOIN && !(getTagMode() == StackEntity.TagMode.NEARBY && isUseArmorStand())) {
             return NameTagStackMode.IGNORE;
         }
@@ -349,7 +626,59 @@ public class EntityConfig {
     }
 
     public boolean isCheckCanSee() {
-        return getBoolean("stack.line-of-sight");
+        return checkCanSee;
+    }
+
+    public boolean isDirtyTracking() {
+        return dirtyTracking;
+    }
+
+    public double getDirtyMoveDistance() {
+        return dirtyMoveDistance;
+    }
+
+    public boolean isLoadSheddingEnabled() {
+        return getBoolean("load-shedding.enabled");
+    }
+
+    public double getLoadSheddingActivate() {
+        return getDouble("load-shedding.activate-mspt");
+    }
+
+    public double getLoadSheddingRestore() {
+        return getDouble("load-shedding.restore-mspt");
+    }
+
+    public int getLoadSheddingHoldTime() {
+        return getInt("load-shedding.hold-time");
+    }
+
+    public int getLoadSheddingMergeMultiplier() {
+        return getInt("load-shedding.merge-interval-multiplier");
+    }
+
+    public int getLoadSheddingTagCheckMultiplier() {
+        return getInt("load-shedding.tag-check-multiplier");
+    }
+
+    public int getLoadSheddingTagMoveInterval() {
+        return getInt("load-shedding.tag-move-interval");
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public int getFlushInterval() {
+        return getInt("persistence.flush-interval");
+    }
+
+    public boolean isLineOfSightCacheEnabled() {
+        return getBoolean("stack.line-of-sight-cache.enabled");
+    }
+
+    public int getLineOfSightCacheTtl() {
+        return getInt("stack.line-of-sight-cache.ttl");
     }
 
     public EntityType getType() {
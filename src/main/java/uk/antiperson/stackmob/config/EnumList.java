@@ -0,0 +1,61 @@
+package uk.antiperson.stackmob.config;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * A config list of enum constants, which is resolved when the config is loaded so checking a value is a set lookup.
+ * If the list is inverted, the set holds every constant which is not listed.
+ * @param <E> the type of enum the list contains.
+ */
+public class EnumList<E extends Enum<E>> {
+
+    private final EnumSet<E> matches;
+
+    private EnumList(EnumSet<E> matches) {
+        this.matches = matches;
+    }
+
+    /**
+     * Whether the given value is in this list, taking into account whether the list is inverted.
+     * @param value the value to check.
+     * @return whether the value is in this list.
+     */
+    public boolean contains(E value) {
+        return value != null && matches.contains(value);
+    }
+
+    /**
+     * Resolves the given config list into the enum constants it contains.
+     * @param enumClass the enum which the list should contain constants of.
+     * @param list the config list.
+     * @param problems where to add a message for each item which is not a constant of the enum.
+     * @param <E> the type of enum the list contains.
+     * @return the resolved list.
+     */
+    public static <E extends Enum<E>> EnumList<E> of(Class<E> enumClass, ConfigList list, Collection<String> problems) {
+        return of(enumClass, list.getItems(), list.isInverted(), list.getPath(), problems);
+    }
+
+    /**
+     * Resolves the given items into the enum constants they name.
+     * @param enumClass the enum which the items should be constants of.
+     * @param items the items of the list.
+     * @param inverted whether the list is inverted.
+     * @param path the path of the list, used in the problem messages.
+     * @param problems where to add a message for each item which is not a constant of the enum.
+     * @param <E> the type of enum the list contains.
+     * @return the resolved list.
+     */
+    public static <E extends Enum<E>> EnumList<E> of(Class<E> enumClass, Collection<?> items, boolean inverted, String path, Collection<String> problems) {
+        EnumSet<E> listed = EnumSet.noneOf(enumClass);
+        for (Object item : items) {
+            try {
+                listed.add(Enum.valueOf(enumClass, String.valueOf(item)));
+            } catch (IllegalArgumentException e) {
+                problems.add("Unknown value '" + item + "' in list " + path + ". It will be ignored.");
+            }
+        }
+        return new EnumList<>(inverted ? EnumSet.complementOf(listed) : listed);
+    }
+}
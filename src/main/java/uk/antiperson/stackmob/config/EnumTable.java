@@ -0,0 +1,71 @@
+package uk.antiperson.stackmob.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * A table of values for each pair of constants of two enums, which is worked out when the config is loaded so getting a
+ * value is two array lookups. Each enum has an extra slot for when the constant is not known, which is passed to the
+ * resolver as null.
+ * @param <R> the type of enum for the rows.
+ * @param <C> the type of enum for the columns.
+ * @param <V> the type of value in the table.
+ */
+public class EnumTable<R extends Enum<R>, C extends Enum<C>, V> {
+
+    private final Object[][] table;
+
+    private EnumTable(Object[][] table) {
+        this.table = table;
+    }
+
+    /**
+     * Gets the value for the given pair of constants.
+     * @param row the row constant, or null if it is not known.
+     * @param column the column constant, or null if it is not known.
+     * @return the value for the given pair of constants.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(R row, C column) {
+        Object[] values = table[row == null ? table.length - 1 : row.ordinal()];
+        return (V) values[column == null ? values.length - 1 : column.ordinal()];
+    }
+
+    /**
+     * Works out the value for every pair of constants of the given enums.
+     * @param rowClass the enum for the rows.
+     * @param columnClass the enum for the columns.
+     * @param resolver works out the value for a pair of constants, either of which can be null.
+     * @param <R> the type of enum for the rows.
+     * @param <C> the type of enum for the columns.
+     * @param <V> the type of value in the table.
+     * @return the worked out table.
+     */
+    public static <R extends Enum<R>, C extends Enum<C>, V> EnumTable<R, C, V> of(Class<R> rowClass, Class<C> columnClass, BiFunction<R, C, V> resolver) {
+        R[] rows = rowClass.getEnumConstants();
+        C[] columns = columnClass.getEnumConstants();
+        List<Object[]> distinctRows = new ArrayList<>();
+        Object[][] table = new Object[rows.length + 1][];
+        for (int i = 0; i <= rows.length; i++) {
+            R row = i < rows.length ? rows[i] : null;
+            Object[] values = new Object[columns.length + 1];
+            for (int j = 0; j <= columns.length; j++) {
+                values[j] = resolver.apply(row, j < columns.length ? columns[j] : null);
+            }
+            // most rows are usually the same, so share rows which are the same to save memory
+            for (Object[] distinctRow : distinctRows) {
+                if (Arrays.equals(distinctRow, values)) {
+                    values = distinctRow;
+                    break;
+                }
+            }
+            if (!distinctRows.contains(values)) {
+                distinctRows.add(values);
+            }
+            table[i] = values;
+        }
+        return new EnumTable<>(table);
+    }
+}
@@ -8,12 +8,16 @@ import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.entity.StackEntity;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class MainConfig {
 
-    private final Map<EntityType, EntityConfig> map;
+    // replaced as a whole when the config is reloaded, so readers never see a partly loaded config
+    private volatile Map<EntityType, EntityConfig> map;
     private final MainConfigFile configFile;
     private final StackMob sm;
 
@@ -25,6 +29,7 @@ public class MainConfig {
 
     public void init() throws IOException {
         configFile.load();
+        Map<EntityType, EntityConfig> map = new EnumMap<>(EntityType.class);
         // iterate every entity type
         for (EntityType entityType : EntityType.values()) {
             if (entityType.getEntityClass() == null || !Mob.class.isAssignableFrom(entityType.getEntityClass())) {
@@ -46,11 +51,8 @@ public class MainConfig {
         }
         // now find which config items have been overridden
         ConfigurationSection custom = configFile.getConfigurationSection("custom");
-        if (custom == null) {
-            return;
-        }
         // get all the top level keys in the custom section
-        for (String key : custom.getKeys(false)) {
+        for (String key : custom == null ? Collections.<String>emptySet() : custom.getKeys(false)) {
             EntityType toRead = EntityType.valueOf(key);
             // determine if we are cloning another section
             EntityType cloneType = null;
@@ -76,11 +78,25 @@ public class MainConfig {
                 }
             }
         }
+        // the same problem can be found in every entity type, so only report each once
+        Set<String> problems = new LinkedHashSet<>();
+        for (EntityConfig entityConfig : map.values()) {
+            entityConfig.compile(problems);
+        }
+        problems.forEach(problem -> sm.getLogger().warning(problem));
+        this.map = map;
     }
 
     public void reload() throws IOException {
         init();
         sm.getEntityManager().getStackEntities().forEach(StackEntity::refreshConfig);
+        sm.getEntityManager().resetGrids();
+        sm.getVisibilityCache().reload();
+        if (sm.getHookManager().getProtocolLibHook() != null) {
+            sm.getHookManager().getProtocolLibHook().clearNameCache();
+        }
+        sm.getLoadSheddingTask().reload();
+        sm.getMergeTask().resetSchedule();
     }
 
     /**
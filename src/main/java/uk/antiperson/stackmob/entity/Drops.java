@@ -10,7 +10,7 @@ import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.loot.LootContext;
 import uk.antiperson.stackmob.StackMob;
-import uk.antiperson.stackmob.config.ConfigList;
+import uk.antiperson.stackmob.config.EnumList;
 import uk.antiperson.stackmob.utils.Utilities;
 
 import java.util.Collection;
@@ -41,8 +41,8 @@ public class Drops {
             return items;
         }
         boolean useLootTables = sm.getMainConfig().getConfig(dead).isDropLootTables();
-        ConfigList itemBlacklist = sm.getMainConfig().getConfig(dead).getDropItemBlacklist();
-        ConfigList dropOneItemPer = sm.getMainConfig().getConfig(dead).getDropItemOnePer();
+        EnumList<Material> itemBlacklist = sm.getMainConfig().getConfig(dead).getDropItemBlacklist();
+        EnumList<Material> dropOneItemPer = sm.getMainConfig().getConfig(dead).getDropItemOnePer();
         LootContext lc = new LootContext.Builder(dead.getLocation()).lootedEntity(dead).killer(dead.getKiller()).build();
         Collection<ItemStack> genItems = originalDrops;
         for (int i = 0; i < deathAmount; i++) {
@@ -59,10 +59,10 @@ public class Drops {
                 if (is.getType() == Material.LEAD && dead.isLeashed()) {
                     continue;
                 }
-                if (itemBlacklist.contains(is.getType().toString())) {
+                if (itemBlacklist.contains(is.getType())) {
                     continue;
                 }
-                int dropAmount = dropOneItemPer.contains(is.getType().toString()) ? 1 : is.getAmount();
+                int dropAmount = dropOneItemPer.contains(is.getType()) ? 1 : is.getAmount();
                 is.setAmount(1);
                 items.compute(is, (key, amount) -> amount == null ? dropAmount : amount + dropAmount);
             }
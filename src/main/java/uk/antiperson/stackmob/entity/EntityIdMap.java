@@ -0,0 +1,221 @@
+package uk.antiperson.stackmob.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A map keyed by entity id, which doesn't box the id.
+ * The ids are kept in an open addressing table using linear probing. Lookups are done without locking, and are only
+ * repeated under the read lock if the table was changed while they were being done. Changes are done under the write lock.
+ * @param <V> the type of value which is mapped.
+ */
+class EntityIdMap<V> {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private final StampedLock lock;
+    private Table<V> table;
+    private int size;
+
+    EntityIdMap() {
+        this.lock = new StampedLock();
+        this.table = new Table<>(MIN_CAPACITY);
+    }
+
+    /**
+     * Gets the value for the given entity id.
+     * @param entityId the entity id.
+     * @return the value for the given entity id, or null if there is none.
+     */
+    V get(int entityId) {
+        long stamp = lock.tryOptimisticRead();
+        V value = table.get(entityId);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return table.get(entityId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean containsKey(int entityId) {
+        return get(entityId) != null;
+    }
+
+    /**
+     * Maps the given value to the given entity id.
+     * @param entityId the entity id.
+     * @param value the value, which can't be null.
+     * @return the value which was mapped to the entity id before, or null if there was none.
+     */
+    V put(int entityId, V value) {
+        long stamp = lock.writeLock();
+        try {
+            V previous = table.put(entityId, value);
+            if (previous == null) {
+                size++;
+                // kept at most half full, so that probes stay short
+                if (size * 2 > table.values.length) {
+                    table = table.resize(table.values.length * 2);
+                }
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the value for the given entity id, if it is the given value.
+     * @param entityId the entity id.
+     * @param value the value which should be removed.
+     * @return whether the value was removed.
+     */
+    boolean remove(int entityId, V value) {
+        long stamp = lock.writeLock();
+        try {
+            if (!table.remove(entityId, value)) {
+                return false;
+            }
+            size--;
+            if (table.values.length > MIN_CAPACITY && size * 8 < table.values.length) {
+                table = table.resize(table.values.length / 2);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets a copy of the mapped values.
+     * @return the mapped values.
+     */
+    List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            List<V> list = new ArrayList<>(size);
+            for (Object value : table.values) {
+                if (value != null) {
+                    list.add(table.cast(value));
+                }
+            }
+            return list;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static final class Table<V> {
+
+        // the keys and values are kept together, so a lookup can never see the keys of one table and the values of another
+        private final int[] keys;
+        private final Object[] values;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private V get(int key) {
+            int slot = slot(key);
+            // bounded, as a lookup without the lock could see the table while it is being changed
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    return cast(value);
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private V put(int key, V value) {
+            int slot = slot(key);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    V previous = cast(values[slot]);
+                    values[slot] = value;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            return null;
+        }
+
+        private boolean remove(int key, V value) {
+            int slot = slot(key);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    if (values[slot] != value) {
+                        return false;
+                    }
+                    shiftBack(slot);
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        // fills the emptied slot with a later entry that probed past it, so that lookups don't stop early
+        private void shiftBack(int empty) {
+            int slot = empty;
+            while (true) {
+                slot = (slot + 1) & mask;
+                Object value = values[slot];
+                if (value == null) {
+                    values[empty] = null;
+                    return;
+                }
+                int home = slot(keys[slot]);
+                // the entry can only move back if its home slot is not between the empty slot and where it is now
+                if (((slot - home) & mask) >= ((slot - empty) & mask)) {
+                    keys[empty] = keys[slot];
+                    values[empty] = value;
+                    empty = slot;
+                }
+            }
+        }
+
+        private Table<V> resize(int capacity) {
+            Table<V> resized = new Table<>(capacity);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    resized.put(keys[i], cast(values[i]));
+                }
+            }
+            return resized;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V cast(Object value) {
+            return (V) value;
+        }
+
+        private int slot(int key) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -2,38 +2,150 @@ package uk.antiperson.stackmob.entity;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Mob;
 import org.bukkit.persistence.PersistentDataType;
 import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.utils.Utilities;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class EntityManager {
 
+    // the most stacks registered each tick when entities load, the rest are registered in the following ticks
+    private static final int REGISTER_BATCH_SIZE = 200;
+
     private final StackMob sm;
-    private final Map<UUID, StackEntity> stackEntities;
+    // keyed by entity id, which unlike the unique id is not shared by an entity and its copy in another world
+    private final EntityIdMap<StackEntity> stackEntities;
+    private final Map<UUID, StackGrid> grids;
+    // the stacks in each chunk, in each world, as of when their position was last updated
+    private final Map<UUID, Map<Long, Set<StackEntity>>> chunks;
+    private final Map<EntityType, Set<StackEntity>> types;
+    // stacks which have changed since they were last checked, used when dirty tracking is enabled
+    private final Set<StackEntity> dirty;
+    private final ThreadLocal<Boolean> spawning = ThreadLocal.withInitial(() -> false);
+    // stacks with a size which has not yet been saved to the entity, used when write-behind is enabled
+    private final Set<StackEntity> unsaved;
+    private final LongAdder sizeChanges;
+    private final LongAdder sizeWrites;
+    // ids of entities which have loaded and are waiting in the queue to be registered
+    private final Set<Integer> pending;
+    private final Queue<LivingEntity> registerQueue;
+    // how many more stacks can be registered this tick
+    private final AtomicInteger registerBudget;
 
     public EntityManager(StackMob sm) {
         this.sm = sm;
-        stackEntities = new ConcurrentHashMap<>();
+        stackEntities = new EntityIdMap<>();
+        grids = new ConcurrentHashMap<>();
+        chunks = new ConcurrentHashMap<>();
+        pending = ConcurrentHashMap.newKeySet();
+        registerQueue = new ConcurrentLinkedQueue<>();
+        registerBudget = new AtomicInteger(REGISTER_BATCH_SIZE);
+        unsaved = ConcurrentHashMap.newKeySet();
+        sizeChanges = new LongAdder();
+        sizeWrites = new LongAdder();
+        types = new ConcurrentHashMap<>();
+        dirty = ConcurrentHashMap.newKeySet();
     }
 
     public boolean isStackedEntity(LivingEntity entity) {
-        return stackEntities.containsKey(entity.getUniqueId());
+        return stackEntities.containsKey(entity.getEntityId());
     }
 
+    /**
+     * Gets a copy of the registered stacks.
+     * @return the registered stacks.
+     */
     public Collection<StackEntity> getStackEntities() {
         return stackEntities.values();
     }
 
+    /**
+     * Gets the stacks of the given entity type.
+     * @param type the entity type.
+     * @return the stacks of the given entity type.
+     */
+    public Collection<StackEntity> getStackEntities(EntityType type) {
+        Set<StackEntity> set = types.get(type);
+        return set == null ? Collections.emptySet() : set;
+    }
+
     public StackEntity getStackEntity(LivingEntity entity) {
-        return stackEntities.get(entity.getUniqueId());
+        return stackEntities.get(entity.getEntityId());
+    }
+
+    public StackEntity getStackEntity(int entityId) {
+        return stackEntities.get(entityId);
+    }
+
+    /**
+     * Gets the stacks in the given chunk, using the position of each stack when it was last updated.
+     * @param chunk the chunk to get the stacks in.
+     * @return the stacks in the given chunk.
+     */
+    public Collection<StackEntity> getStackEntities(Chunk chunk) {
+        return getStackEntities(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Gets the stacks in the chunk at the given coordinates, using the position of each stack when it was last updated.
+     * The chunk does not need to be loaded.
+     * @param world the world the chunk is in.
+     * @param chunkX the x coordinate of the chunk.
+     * @param chunkZ the z coordinate of the chunk.
+     * @return the stacks in the chunk.
+     */
+    public Collection<StackEntity> getStackEntities(World world, int chunkX, int chunkZ) {
+        Map<Long, Set<StackEntity>> worldChunks = chunks.get(world.getUID());
+        if (worldChunks == null) {
+            return Collections.emptySet();
+        }
+        Set<StackEntity> set = worldChunks.get(chunkKey(chunkX, chunkZ));
+        return set == null ? Collections.emptySet() : set;
+    }
+
+    /**
+     * Gets the amount of chunks which contain at least one stack.
+     * @return the amount of chunks which contain at least one stack.
+     */
+    public int getChunkCount() {
+        int count = 0;
+        for (Map<Long, Set<StackEntity>> worldChunks : chunks.values()) {
+            count += worldChunks.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the most stacks that are in a single chunk.
+     * @return the most stacks that are in a single chunk.
+     */
+    public int getMostInChunk() {
+        int most = 0;
+        for (Map<Long, Set<StackEntity>> worldChunks : chunks.values()) {
+            for (Set<StackEntity> set : worldChunks.values()) {
+                most = Math.max(most, set.size());
+            }
+        }
+        return most;
     }
 
     public void registerAllEntities() {
@@ -45,10 +157,8 @@ public class EntityManager {
     }
 
     public void unregisterAllEntities() {
-        for (World world : Bukkit.getWorlds()) {
-            for (Chunk chunk : world.getLoadedChunks()) {
-                unregisterStackedEntities(chunk);
-            }
+        for (StackEntity stackEntity : getStackEntities()) {
+            unregisterStackedEntity(stackEntity);
         }
     }
 
@@ -61,34 +171,103 @@ public class EntityManager {
             if (!(entity instanceof Mob)) {
                 continue;
             }
+            if (isStackedEntity((LivingEntity) entity)) {
+                continue;
+            }
             if (!hasStackData(entity)) {
                 continue;
             }
-            sm.getEntityManager().registerStackedEntity((LivingEntity) entity);
+            registerStackedEntity((LivingEntity) entity);
         }
     }
 
-    public void unregisterStackedEntities(Chunk chunk) {
-        for (Entity entity : chunk.getEntities()) {
+    /**
+     * Registers the stacks in the given list of entities which have just loaded, skipping any which are already
+     * registered. Only a limited amount of stacks are registered each tick across all loaded entities, the rest are
+     * queued and registered in the following ticks.
+     * @param entities the entities which have loaded.
+     */
+    public void registerLoadedEntities(List<Entity> entities) {
+        for (Entity entity : entities) {
             if (!(entity instanceof Mob)) {
                 continue;
             }
-            StackEntity stackEntity = sm.getEntityManager().getStackEntity((LivingEntity) entity);
-            if (stackEntity == null) {
+            LivingEntity livingEntity = (LivingEntity) entity;
+            if (isStackedEntity(livingEntity)) {
+                continue;
+            }
+            if (!hasStackData(entity)) {
+                continue;
+            }
+            // keep to the order the entities loaded in, so nothing waits in the queue forever
+            if (registerQueue.isEmpty() && registerBudget.getAndDecrement() > 0) {
+                registerStackedEntity(livingEntity);
+                continue;
+            }
+            pending.add(entity.getEntityId());
+            registerQueue.add(livingEntity);
+        }
+    }
+
+    /**
+     * Registers the queued entities which loaded in earlier ticks, up to the amount that can be registered each tick.
+     * This should be run every tick.
+     */
+    public void registerQueued() {
+        registerBudget.set(REGISTER_BATCH_SIZE);
+        while (registerBudget.getAndDecrement() > 0) {
+            LivingEntity entity = registerQueue.poll();
+            if (entity == null) {
+                return;
+            }
+            pending.remove(entity.getEntityId());
+            if (Utilities.IS_FOLIA) {
+                sm.getScheduler().runTask(sm, entity, () -> registerQueued(entity));
                 continue;
             }
-            sm.getEntityManager().unregisterStackedEntity(stackEntity);
+            registerQueued(entity);
+        }
+    }
+
+    private void registerQueued(LivingEntity entity) {
+        // the entity could have been unloaded or registered by something else while it was waiting
+        if (!entity.isValid() || isStackedEntity(entity)) {
+            return;
+        }
+        registerStackedEntity(entity);
+    }
+
+    /**
+     * Whether the given entity has loaded and is waiting to be registered in a batch.
+     * @param entity the entity to check.
+     * @return whether the given entity is waiting to be registered.
+     */
+    public boolean isPendingRegistration(LivingEntity entity) {
+        return pending.contains(entity.getEntityId());
+    }
+
+    public void unregisterStackedEntities(Chunk chunk) {
+        for (StackEntity stackEntity : new ArrayList<>(getStackEntities(chunk))) {
+            unregisterStackedEntity(stackEntity);
         }
     }
 
     public StackEntity registerStackedEntity(LivingEntity entity) {
         StackEntity stackEntity = new StackEntity(sm, entity);
-        stackEntities.put(entity.getUniqueId(), stackEntity);
+        registerStackedEntity(stackEntity);
         return stackEntity;
     }
 
     public void registerStackedEntity(StackEntity entity) {
-        stackEntities.put(entity.getEntity().getUniqueId(), entity);
+        StackEntity previous = stackEntities.put(entity.getEntity().getEntityId(), entity);
+        if (previous != null && previous != entity) {
+            // the replaced stack could still have a size waiting to be saved
+            previous.saveSize();
+            forget(previous);
+        }
+        types.computeIfAbsent(entity.getEntity().getType(), type -> ConcurrentHashMap.newKeySet()).add(entity);
+        updateLocation(entity);
+        markDirty(entity);
     }
 
     public void unregisterStackedEntity(LivingEntity entity) {
@@ -100,7 +279,295 @@ public class EntityManager {
     }
 
     public void unregisterStackedEntity(StackEntity stackEntity) {
-        stackEntities.remove(stackEntity.getEntity().getUniqueId());
+        // the entity is unloading or being removed, so this is the last chance to save its size
+        stackEntity.saveSize();
+        stackEntities.remove(stackEntity.getEntity().getEntityId(), stackEntity);
+        forget(stackEntity);
+    }
+
+    // removes the given stack from the indexes, once it is no longer registered
+    private void forget(StackEntity stackEntity) {
+        Set<StackEntity> set = types.get(stackEntity.getEntity().getType());
+        if (set != null) {
+            set.remove(stackEntity);
+        }
+        dirty.remove(stackEntity);
+        unsaved.remove(stackEntity);
+        if (stackEntity.grid != null) {
+            stackEntity.grid.remove(stackEntity);
+        }
+        removeFromChunk(stackEntity);
+    }
+
+    /**
+     * Queues the given stack to be checked in the next merge pass, if dirty tracking is enabled.
+     * This should be called whenever something happens that could let the stack merge with another.
+     * @param stackEntity the stack which has changed.
+     */
+    public void markDirty(StackEntity stackEntity) {
+        if (!sm.getMainConfig().getConfig().isDirtyTracking()) {
+            return;
+        }
+        dirty.add(stackEntity);
+    }
+
+    /**
+     * Removes and returns the stacks of the given types which have changed since they were last checked.
+     * @param entityTypes the entity types to get the changed stacks of.
+     * @return the stacks of the given types which have changed since they were last checked.
+     */
+    public List<StackEntity> pollDirty(Set<EntityType> entityTypes) {
+        List<StackEntity> list = new ArrayList<>();
+        Iterator<StackEntity> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            StackEntity stackEntity = iterator.next();
+            if (!entityTypes.contains(stackEntity.getEntity().getType())) {
+                continue;
+            }
+            iterator.remove();
+            // the stack may have been changed after it was unregistered
+            if (stackEntities.get(stackEntity.getEntity().getEntityId()) == stackEntity) {
+                list.add(stackEntity);
+            }
+        }
+        return list;
+    }
+
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Queues the size of the given stack to be saved to the entity in the next flush.
+     * @param stackEntity the stack which has changed size.
+     */
+    void markUnsaved(StackEntity stackEntity) {
+        unsaved.add(stackEntity);
+    }
+
+    void countSizeChange() {
+        sizeChanges.increment();
+    }
+
+    void countSizeWrite() {
+        sizeWrites.increment();
+    }
+
+    /**
+     * Saves the sizes of all stacks which have changed size since they were last saved.
+     */
+    public void flushSizes() {
+        flushSizes(null);
+    }
+
+    /**
+     * Saves the sizes of the stacks in the given world which have changed size since they were last saved.
+     * @param world the world to save the stacks of, or null for all worlds.
+     */
+    public void flushSizes(World world) {
+        Iterator<StackEntity> iterator = unsaved.iterator();
+        while (iterator.hasNext()) {
+            StackEntity stackEntity = iterator.next();
+            if (world != null && !world.equals(stackEntity.getEntity().getWorld())) {
+                continue;
+            }
+            iterator.remove();
+            if (Utilities.IS_FOLIA) {
+                sm.getScheduler().runTask(sm, stackEntity.getEntity(), stackEntity::saveSize);
+                continue;
+            }
+            stackEntity.saveSize();
+        }
+    }
+
+    /**
+     * Gets the amount of stacks which have a size that has not been saved to the entity yet.
+     * @return the amount of stacks with an unsaved size.
+     */
+    public int getUnsavedCount() {
+        return unsaved.size();
+    }
+
+    /**
+     * Gets the amount of times the size of a stack has changed.
+     * @return the amount of times the size of a stack has changed.
+     */
+    public long getSizeChanges() {
+        return sizeChanges.sum();
+    }
+
+    /**
+     * Gets the amount of times the size of a stack has been saved to the entity.
+     * @return the amount of times the size of a stack has been saved to the entity.
+     */
+    public long getSizeWrites() {
+        return sizeWrites.sum();
+    }
+
+    /**
+     * Marks the given stack as dirty if it has moved far enough from where it was last checked.
+     * @param stackEntity the stack which may have moved.
+     * @param location the current location of the stack.
+     */
+    public void checkMoved(StackEntity stackEntity, Location location) {
+        updateChunk(stackEntity, location);
+        if (stackEntity.grid == null || stackEntity.grid != grids.get(location.getWorld().getUID())) {
+            markDirty(stackEntity);
+            return;
+        }
+        double distance = sm.getMainConfig().getConfig().getDirtyMoveDistance();
+        double x = location.getX() - stackEntity.gridX;
+        double y = location.getY() - stackEntity.gridY;
+        double z = location.getZ() - stackEntity.gridZ;
+        if ((x * x) + (y * y) + (z * z) >= distance * distance) {
+            markDirty(stackEntity);
+        }
+    }
+
+    /**
+     * Updates the position of the given stack in the spatial grid of its world.
+     * This should be called from the thread that owns the entity.
+     * @param stackEntity the stack to update.
+     */
+    public void updateLocation(StackEntity stackEntity) {
+        // traits such as age can change without an event, so check whether the key is still up to date
+        stackEntity.refreshStackKey();
+        Location location = stackEntity.getEntity().getLocation();
+        getGrid(location.getWorld()).move(stackEntity, location.getX(), location.getY(), location.getZ());
+        updateChunk(stackEntity, location);
+    }
+
+    /**
+     * Updates the chunk the given stack is indexed in, without updating its position in the spatial grid.
+     * This is used for stacks which are not able to stack, so that they can still be found by chunk.
+     * @param stackEntity the stack to update.
+     */
+    public void updateChunk(StackEntity stackEntity) {
+        updateChunk(stackEntity, stackEntity.getEntity().getLocation());
+    }
+
+    /**
+     * Moves the given stack to the chunk of the given location in the chunk index, if it has changed chunk.
+     * @param stackEntity the stack to update.
+     * @param location the current location of the stack.
+     */
+    public void updateChunk(StackEntity stackEntity, Location location) {
+        UUID world = location.getWorld().getUID();
+        long chunkKey = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        if (world.equals(stackEntity.chunkWorld) && chunkKey == stackEntity.chunkKey) {
+            return;
+        }
+        removeFromChunk(stackEntity);
+        stackEntity.chunkWorld = world;
+        stackEntity.chunkKey = chunkKey;
+        chunks.computeIfAbsent(world, uuid -> new ConcurrentHashMap<>()).compute(chunkKey, (key, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(stackEntity);
+            return set;
+        });
+    }
+
+    private void removeFromChunk(StackEntity stackEntity) {
+        if (stackEntity.chunkWorld == null) {
+            return;
+        }
+        Map<Long, Set<StackEntity>> worldChunks = chunks.get(stackEntity.chunkWorld);
+        if (worldChunks != null) {
+            worldChunks.computeIfPresent(stackEntity.chunkKey, (key, set) -> {
+                set.remove(stackEntity);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        stackEntity.chunkWorld = null;
+    }
+
+    private static long chunkKey(int x, int z) {
+        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+    }
+
+    /**
+     * Gets the stacks which are within the given range of the given stack, using the position of each stack
+     * when it was last updated in the spatial grid.
+     * @param stackEntity the stack at the centre of the search area.
+     * @param range the search range, in the format [x, y, z].
+     * @return the stacks which are within the given range.
+     */
+    public List<StackEntity> getNearbyStacks(StackEntity stackEntity, Integer[] range) {
+        if (stackEntity.grid == null) {
+            updateLocation(stackEntity);
+        }
+        return stackEntity.grid.getNearby(stackEntity, range[0], range[1], range[2]);
+    }
+
+    /**
+     * Gets the stacks which are within the given range of a stack which has not been registered, such as an entity
+     * which is still being spawned.
+     * @param stackEntity the stack to find nearby stacks for. This is not added to the spatial grid.
+     * @param location the location of the centre of the search area.
+     * @param range the search range, in the format [x, y, z].
+     * @return the stacks which are within the given range.
+     */
+    public List<StackEntity> getNearbyStacks(StackEntity stackEntity, Location location, Integer[] range) {
+        StackGrid grid = grids.get(location.getWorld().getUID());
+        if (grid == null) {
+            return Collections.emptyList();
+        }
+        return grid.getNearby(stackEntity.getStackKey(), location.getX(), location.getY(), location.getZ(), range[0], range[1], range[2]);
+    }
+
+    /**
+     * Checks that a stack is within the given range of a location. The spatial grid only knows where each stack was
+     * when it was last checked, so this uses where the entity is now.
+     * @param location the location of the centre of the search area.
+     * @param nearby the stack to check.
+     * @param range the search range, in the format [x, y, z].
+     * @return whether the stack is within range of the location.
+     */
+    public boolean isInRange(Location location, StackEntity nearby, Integer[] range) {
+        Location nearbyLocation = nearby.getEntity().getLocation();
+        if (!location.getWorld().equals(nearbyLocation.getWorld())) {
+            return false;
+        }
+        return Math.abs(location.getX() - nearbyLocation.getX()) <= range[0]
+                && Math.abs(location.getY() - nearbyLocation.getY()) <= range[1]
+                && Math.abs(location.getZ() - nearbyLocation.getZ()) <= range[2];
+    }
+
+    /**
+     * Whether the current thread is spawning an entity for a stack, such as when a stack is sliced.
+     * These entities need to exist, so they should never be absorbed into another stack when they spawn.
+     * @return whether the current thread is spawning an entity for a stack.
+     */
+    public boolean isSpawning() {
+        return spawning.get();
+    }
+
+    void setSpawning(boolean spawning) {
+        this.spawning.set(spawning);
+    }
+
+    /**
+     * Clears the spatial grids, so that they are rebuilt using the current cell size.
+     */
+    public void resetGrids() {
+        grids.clear();
+        for (StackEntity stackEntity : getStackEntities()) {
+            stackEntity.grid = null;
+            if (Utilities.IS_FOLIA) {
+                sm.getScheduler().runTask(sm, stackEntity.getEntity(), () -> updateLocation(stackEntity));
+                continue;
+            }
+            updateLocation(stackEntity);
+        }
+    }
+
+    private StackGrid getGrid(World world) {
+        return grids.computeIfAbsent(world.getUID(), uuid -> {
+            Integer[] cellSize = sm.getMainConfig().getConfig().getStackRadius();
+            return new StackGrid(cellSize[0], cellSize[1], cellSize[2]);
+        });
     }
 
 }
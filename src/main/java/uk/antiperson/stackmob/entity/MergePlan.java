@@ -0,0 +1,196 @@
+package uk.antiperson.stackmob.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of merges which should be carried out, worked out from snapshots of the stacks.
+ * Making the plan does not touch any entities, so it can be done off the main thread. The plan then needs to be
+ * applied on the thread which owns the entities, checking that each merge is still valid.
+ */
+public class MergePlan {
+
+    private final List<Action> actions;
+
+    private MergePlan(List<Action> actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * Gets the merges in this plan, in the order they should be carried out.
+     * @return the merges in this plan.
+     */
+    public List<Action> getActions() {
+        return actions;
+    }
+
+    /**
+     * Works out which stacks should merge, following the same rules as a normal merge pass.
+     * @param snapshots the snapshots of the stacks which are able to stack.
+     * @param cellX the size of the cells used to find nearby stacks on the x axis.
+     * @param cellY the size of the cells used to find nearby stacks on the y axis.
+     * @param cellZ the size of the cells used to find nearby stacks on the z axis.
+     * @return the plan of merges.
+     */
+    public static MergePlan create(List<StackSnapshot> snapshots, int cellX, int cellY, int cellZ) {
+        cellX = Math.max(1, cellX);
+        cellY = Math.max(1, cellY);
+        cellZ = Math.max(1, cellZ);
+        List<Node> nodes = new ArrayList<>(snapshots.size());
+        Map<List<Object>, List<Node>> cells = new HashMap<>();
+        for (StackSnapshot snapshot : snapshots) {
+            Node node = new Node(snapshot);
+            nodes.add(node);
+            List<Object> cell = cell(snapshot, cell(snapshot.getX(), cellX), cell(snapshot.getY(), cellY), cell(snapshot.getZ(), cellZ));
+            cells.computeIfAbsent(cell, key -> new ArrayList<>()).add(node);
+        }
+        List<Action> actions = new ArrayList<>();
+        for (Node original : nodes) {
+            if (!original.snapshot.isCheck() || !original.canStack()) {
+                continue;
+            }
+            StackSnapshot snapshot = original.snapshot;
+            Integer[] range = snapshot.getRange();
+            List<Node> matches = new ArrayList<>();
+            search:
+            for (int cx = cell(snapshot.getX() - range[0], cellX); cx <= cell(snapshot.getX() + range[0], cellX); cx++) {
+                for (int cy = cell(snapshot.getY() - range[1], cellY); cy <= cell(snapshot.getY() + range[1], cellY); cy++) {
+                    for (int cz = cell(snapshot.getZ() - range[2], cellZ); cz <= cell(snapshot.getZ() + range[2], cellZ); cz++) {
+                        List<Node> candidates = cells.get(cell(snapshot, cx, cy, cz));
+                        if (candidates == null) {
+                            continue;
+                        }
+                        for (Node nearby : candidates) {
+                            if (nearby == original || !nearby.canStack() || !original.isInRange(nearby)) {
+                                continue;
+                            }
+                            if (!snapshot.isThresholdEnabled() || nearby.size > 1 || original.size > 1) {
+                                actions.add(new Action(original.getStackEntity(), Collections.singletonList(nearby.getStackEntity()), false));
+                                if (original.merge(nearby) != null) {
+                                    break search;
+                                }
+                                continue;
+                            }
+                            matches.add(nearby);
+                        }
+                    }
+                }
+            }
+            if (!snapshot.isThresholdEnabled() || original.removed) {
+                continue;
+            }
+            if (matches.size() < snapshot.getThreshold() - 1) {
+                continue;
+            }
+            List<StackEntity> toMerge = new ArrayList<>(matches.size());
+            for (Node match : matches) {
+                match.removed = true;
+                toMerge.add(match.getStackEntity());
+            }
+            original.size = Math.min(snapshot.getMaxSize(), original.size + matches.size());
+            actions.add(new Action(original.getStackEntity(), toMerge, true));
+        }
+        return new MergePlan(actions);
+    }
+
+    private static List<Object> cell(StackSnapshot snapshot, int x, int y, int z) {
+        return Arrays.asList(snapshot.getWorld(), snapshot.getStackKey(), x, y, z);
+    }
+
+    private static int cell(double coord, int size) {
+        return (int) Math.floor(coord / size);
+    }
+
+    /**
+     * A single step of the plan.
+     */
+    public static class Action {
+
+        private final StackEntity original;
+        private final List<StackEntity> matches;
+        private final boolean threshold;
+
+        private Action(StackEntity original, List<StackEntity> matches, boolean threshold) {
+            this.original = original;
+            this.matches = matches;
+            this.threshold = threshold;
+        }
+
+        /**
+         * Gets the stack which the matches were found around.
+         * @return the stack which the matches were found around.
+         */
+        public StackEntity getOriginal() {
+            return original;
+        }
+
+        /**
+         * Gets the stacks which should be merged with the original.
+         * @return the stacks which should be merged with the original.
+         */
+        public List<StackEntity> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Whether the matches are single entities which should all be merged at once, because the threshold was reached.
+         * @return whether this step is a threshold merge.
+         */
+        public boolean isThreshold() {
+            return threshold;
+        }
+    }
+
+    // the state of a stack as the plan is being made
+    private static class Node {
+
+        private final StackSnapshot snapshot;
+        private int size;
+        private boolean removed;
+
+        private Node(StackSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.size = snapshot.getSize();
+        }
+
+        private StackEntity getStackEntity() {
+            return snapshot.getStackEntity();
+        }
+
+        private boolean canStack() {
+            return !removed && size < snapshot.getMaxSize();
+        }
+
+        private boolean isInRange(Node nearby) {
+            Integer[] range = snapshot.getRange();
+            return Math.abs(nearby.snapshot.getX() - snapshot.getX()) <= range[0]
+                    && Math.abs(nearby.snapshot.getY() - snapshot.getY()) <= range[1]
+                    && Math.abs(nearby.snapshot.getZ() - snapshot.getZ()) <= range[2];
+        }
+
+        /**
+         * Simulates the merge of the two stacks, in the same way as {@link StackEntity#merge(StackEntity, boolean)}.
+         * @param nearby the stack to merge with.
+         * @return the stack which would be removed by the merge, or null if neither would be removed.
+         */
+        private Node merge(Node nearby) {
+            boolean nearbyBigger = nearby.size > size;
+            Node smallest = nearbyBigger ? this : nearby;
+            Node biggest = nearbyBigger ? nearby : this;
+            int totalSize = smallest.size + biggest.size;
+            int maxSize = snapshot.getMaxSize();
+            if (totalSize > maxSize) {
+                smallest.size = totalSize - maxSize;
+                biggest.size = maxSize;
+                return null;
+            }
+            biggest.size = totalSize;
+            smallest.removed = true;
+            return smallest;
+        }
+    }
+}
@@ -2,31 +2,33 @@ package uk.antiperson.stackmob.entity;
 
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import org.bukkit.FluidCollisionMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.entity.Ageable;
 import org.bukkit.entity.Animals;
+import org.bukkit.entity.Bee;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Mob;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.Turtle;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.potion.PotionEffect;
-import org.bukkit.util.RayTraceResult;
-import org.bukkit.util.Vector;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.config.EntityConfig;
 import uk.antiperson.stackmob.events.EventHelper;
 import uk.antiperson.stackmob.hook.StackableMobHook;
 import uk.antiperson.stackmob.utils.Utilities;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class StackEntity {
@@ -37,6 +39,8 @@ public class StackEntity {
     private boolean waiting;
     private boolean forgetOnSpawn;
     private boolean removed;
+    // whether the size has changed since it was last saved to the entity
+    private boolean sizeUnsaved;
     private Location lastLocation;
     private int waitCount;
     private int stackSize;
@@ -44,6 +48,19 @@ public class StackEntity {
     private Set<ItemStack> equiptItems;
     private Tag tag;
     private EntityConfig entityConfig;
+    private StackKey stackKey;
+    // the state of the traits which can change without an event, as of when the key was made
+    private int stackKeyState;
+    // position of this stack in the spatial grid, maintained by StackGrid
+    StackGrid grid;
+    long gridCell;
+    StackKey gridKey;
+    double gridX;
+    double gridY;
+    double gridZ;
+    // the chunk this stack is indexed in, maintained by EntityManager
+    UUID chunkWorld;
+    long chunkKey;
 
     public StackEntity(StackMob sm, LivingEntity entity) {
         this.sm = sm;
@@ -72,14 +89,35 @@ public class StackEntity {
                     + ") is bigger than the allowed maximum. Setting to the configured maximum value.");
             newSize = getMaxSize();
         }
-        entity.getPersistentDataContainer().set(sm.getStackKey(), PersistentDataType.INTEGER, newSize);
         stackSize = newSize;
+        sizeUnsaved = true;
+        entityManager.countSizeChange();
+        if (sm.getMainConfig().getConfig().isWriteBehind()) {
+            entityManager.markUnsaved(this);
+        } else {
+            saveSize();
+        }
+        entityManager.markDirty(this);
         if (update) {
             getTag().update();
         }
     }
 
+    /**
+     * Saves the size of this stack to the entity, if it has changed since it was last saved.
+     * This should be called from the thread that owns the entity.
+     */
+    public void saveSize() {
+        if (!sizeUnsaved) {
+            return;
+        }
+        sizeUnsaved = false;
+        entity.getPersistentDataContainer().set(sm.getStackKey(), PersistentDataType.INTEGER, stackSize);
+        entityManager.countSizeWrite();
+    }
+
     public void removeStackData() {
+        sizeUnsaved = false;
         entity.getPersistentDataContainer().remove(sm.getStackKey());
         entity.setCustomNameVisible(false);
         entityManager.unregisterStackedEntity(this);
@@ -287,8 +325,14 @@ public class StackEntity {
      * @return if the given entity and this entity should stack.
      */
     public boolean match(StackEntity nearby) {
-        if (getEntity().getType() != nearby.getEntity().getType()) {
-            return false;
+        // the key includes the type, and is only used to rule out stacks quickly, the full checks below are still done
+        if (!getStackKey().equals(nearby.getStackKey())) {
+            // the keys are kept between checks, so rebuild them in case either is out of date
+            stackKey = null;
+            nearby.stackKey = null;
+            if (!getStackKey().equals(nearby.getStackKey())) {
+                return false;
+            }
         }
         if (sm.getTraitManager().checkTraits(this, nearby)) {
             return false;
@@ -299,6 +343,65 @@ public class StackEntity {
         return getEntityConfig().isCheckCanSee() && rayTraceStack(nearby);
     }
 
+    /**
+     * Gets the compatibility key of this stack. Stacks can only stack together if their keys are equal.
+     * @return the compatibility key of this stack.
+     */
+    public StackKey getStackKey() {
+        if (stackKey == null) {
+            Object[] traits = sm.getTraitManager().getTraitKeys(this);
+            Object hook = sm.getHookManager().getHookKey(this);
+            if (hook == StackKey.UNIQUE || Arrays.asList(traits).contains(StackKey.UNIQUE)) {
+                // this stack can not stack with anything, so give it a key that only it has
+                hook = this;
+            }
+            stackKey = new StackKey(getEntity().getType(), traits, hook);
+            stackKeyState = getChangeableState();
+        }
+        return stackKey;
+    }
+
+    /**
+     * Marks the compatibility key of this stack as out of date, so that it is rebuilt when it is next needed.
+     * This should be called whenever something that prevents stacking (e.g. the colour of a sheep) has changed.
+     */
+    public void invalidateStackKey() {
+        stackKey = null;
+        entityManager.markDirty(this);
+    }
+
+    /**
+     * Marks the compatibility key of this stack as out of date if any of the traits which can change without an event
+     * (e.g. a baby growing up) have changed since it was made.
+     */
+    void refreshStackKey() {
+        if (stackKey != null && stackKeyState != getChangeableState()) {
+            stackKey = null;
+        }
+    }
+
+    private int getChangeableState() {
+        LivingEntity entity = getEntity();
+        int state = 0;
+        if (entity instanceof Ageable && ((Ageable) entity).isAdult()) {
+            state |= 1;
+        }
+        if (entity instanceof Animals) {
+            Animals animals = (Animals) entity;
+            state |= animals.canBreed() ? 2 : 0;
+            state |= animals.getLoveModeTicks() != 0 ? 4 : 0;
+        }
+        if (entity instanceof Bee) {
+            Bee bee = (Bee) entity;
+            state |= bee.hasNectar() ? 8 : 0;
+            state |= bee.hasStung() ? 16 : 0;
+        }
+        if (entity instanceof Turtle && ((Turtle) entity).hasEgg()) {
+            state |= 32;
+        }
+        return state;
+    }
+
     public boolean canStack() {
         if (hasEquipItem()) {
             if (getEntityConfig().getEquipItemMode() == EquipItemMode.PREVENT_STACK) {
@@ -417,6 +520,7 @@ public class StackEntity {
         LivingEntity clone = cloneStack.getEntity();
         sm.getTraitManager().applyTraits(cloneStack, this);
         sm.getHookManager().onSpawn(cloneStack);
+        cloneStack.invalidateStackKey();
         // Remove equipment if is a drowned
         if (Utilities.isPaper() && clone.getEntitySpawnReason() == CreatureSpawnEvent.SpawnReason.DROWNED) {
             for (EquipmentSlot equipmentSlot : Utilities.HAND_SLOTS) {
@@ -434,18 +538,28 @@ public class StackEntity {
     }
 
     private LivingEntity spawnClone() {
-        LivingEntity entity = sm.getHookManager().spawnClone(getEntity().getLocation(), this);
-        if (entity != null) {
-            return entity;
+        entityManager.setSpawning(true);
+        try {
+            LivingEntity entity = sm.getHookManager().spawnClone(getEntity().getLocation(), this);
+            if (entity != null) {
+                return entity;
+            }
+            return spawn(getEntity().getType());
+        } finally {
+            entityManager.setSpawning(false);
         }
-        return spawn(getEntity().getType());
     }
 
     private LivingEntity spawn(EntityType entityType) {
-        if (Utilities.isPaper()) {
-            return (LivingEntity) getWorld().spawnEntity(getEntity().getLocation(), entityType, getEntity().getEntitySpawnReason());
+        entityManager.setSpawning(true);
+        try {
+            if (Utilities.isPaper()) {
+                return (LivingEntity) getWorld().spawnEntity(getEntity().getLocation(), entityType, getEntity().getEntitySpawnReason());
+            }
+            return (LivingEntity) getWorld().spawnEntity(getEntity().getLocation(), entityType);
+        } finally {
+            entityManager.setSpawning(false);
         }
-        return (LivingEntity) getWorld().spawnEntity(getEntity().getLocation(), entityType);
     }
 
     public boolean isSingle() {
@@ -478,6 +592,8 @@ public class StackEntity {
         if (getEntity().isLeashed()) {
             duplicate.getEntity().setLeashHolder(getEntity().getLeashHolder());
             getEntity().setLeashHolder(null);
+            duplicate.invalidateStackKey();
+            invalidateStackKey();
         }
         return duplicate;
     }
@@ -519,6 +635,8 @@ public class StackEntity {
 
     public void refreshConfig() {
         entityConfig = sm.getMainConfig().getConfig(getEntity());
+        // which traits and hooks are used can depend on the config
+        stackKey = null;
     }
     
     public EntityConfig getEntityConfig() {
@@ -545,13 +663,7 @@ public class StackEntity {
         if (getEntity().getEyeLocation().getWorld() != livingEntity.getWorld()) {
             return false;
         }
-        Vector resultant = getEntity().getEyeLocation().toVector().subtract(livingEntity.getEyeLocation().toVector());
-        double distance = livingEntity.getEyeLocation().distance(getEntity().getEyeLocation());
-        if (distance == 0 || resultant.lengthSquared() == 0) {
-            return true;
-        }
-        RayTraceResult result = livingEntity.getWorld().rayTraceBlocks(livingEntity.getEyeLocation(), resultant, distance, FluidCollisionMode.NEVER, true);
-        return result == null || result.getHitBlock() == null;
+        return sm.getVisibilityCache().canSee(livingEntity.getEyeLocation(), getEntity().getEyeLocation());
     }
 
     public enum EquipItemMode {
@@ -569,6 +681,9 @@ public class StackEntity {
     public class Tag {
 
         private Component displayName;
+        private TagTemplate template;
+        // the config the template was taken from, so that a new one is used when the config is reloaded
+        private EntityConfig templateConfig;
 
         public void update() {
             LivingEntity entity = getEntity();
@@ -581,10 +696,7 @@ public class StackEntity {
                 entity.setCustomNameVisible(false);
                 return;
             }
-            String format = getEntityConfig().getTagFormat();
-            format = format.replace("%type%", getEntityName());
-            format = format.replace("%size%", getSize() + "");
-            displayName = Utilities.createComponent(format);
+            displayName = getTemplate().getDisplayName(getSize());
             if (getEntityConfig().isUseArmorStand() && getEntityConfig().getTagMode() == TagMode.NEARBY) {
                 return;
             }
@@ -598,16 +710,27 @@ public class StackEntity {
             entity.setCustomName(LegacyComponentSerializer.legacySection().serialize(component));
         }
 
-        private String getEntityName() {
-            LivingEntity entity = getEntity();
-            String typeString = sm.getEntityTranslation().getTranslatedName(entity.getType());
+        private TagTemplate getTemplate() {
+            EntityConfig config = getEntityConfig();
+            if (template != null && templateConfig == config) {
+                return template;
+            }
+            String typeString = sm.getEntityTranslation().getTranslatedName(getEntity().getType());
             if (typeString != null && typeString.length() > 0) {
-                return typeString;
+                template = config.getTagTemplate(typeString);
+                templateConfig = config;
+                return template;
             }
             StackableMobHook smh = sm.getHookManager().getApplicableHook(StackEntity.this);
-            typeString = smh != null ? smh.getDisplayName(entity) : entity.getType().toString();
-            typeString = typeString == null ? entity.getType().toString() : typeString;
-            return Utilities.capitalizeString(Utilities.filter(typeString));
+            if (smh == null) {
+                template = config.getTagTemplate(Utilities.capitalizeString(Utilities.filter(getEntity().getType().toString())));
+                templateConfig = config;
+                return template;
+            }
+            // names given by hooks can change, so the template for these is looked up each time
+            typeString = smh.getDisplayName(getEntity());
+            typeString = typeString == null ? getEntity().getType().toString() : typeString;
+            return config.getTagTemplate(Utilities.capitalizeString(Utilities.filter(typeString)));
         }
 
         public Component getDisplayName() {
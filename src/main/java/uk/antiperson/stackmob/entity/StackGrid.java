@@ -0,0 +1,162 @@
+package uk.antiperson.stackmob.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A spatial hash of the stacked entities in a single world.
+ * Entities are bucketed into cells, so that finding nearby stacks only needs to look at the cells which overlap
+ * the search area, rather than every entity in the world. Within each cell, entities are bucketed again by their
+ * stack key, so that entities which could never stack together are not returned.
+ */
+public class StackGrid {
+
+    private final Map<Long, Map<StackKey, Set<StackEntity>>> cells;
+    private final int cellX;
+    private final int cellY;
+    private final int cellZ;
+
+    public StackGrid(int cellX, int cellY, int cellZ) {
+        this.cells = new ConcurrentHashMap<>();
+        this.cellX = Math.max(1, cellX);
+        this.cellY = Math.max(1, cellY);
+        this.cellZ = Math.max(1, cellZ);
+    }
+
+    /**
+     * Updates the position and key of the given stack in this grid, moving it to another bucket if needed.
+     * @param stackEntity the stack to move.
+     * @param x the x coordinate of the stack.
+     * @param y the y coordinate of the stack.
+     * @param z the z coordinate of the stack.
+     */
+    public void move(StackEntity stackEntity, double x, double y, double z) {
+        long cell = toCell(x, y, z);
+        StackKey stackKey = stackEntity.getStackKey();
+        stackEntity.gridX = x;
+        stackEntity.gridY = y;
+        stackEntity.gridZ = z;
+        if (stackEntity.grid == this && stackEntity.gridCell == cell && stackKey.equals(stackEntity.gridKey)) {
+            return;
+        }
+        if (stackEntity.grid != null) {
+            stackEntity.grid.remove(stackEntity);
+        }
+        stackEntity.grid = this;
+        stackEntity.gridCell = cell;
+        stackEntity.gridKey = stackKey;
+        cells.compute(cell, (key, buckets) -> {
+            if (buckets == null) {
+                buckets = new ConcurrentHashMap<>();
+            }
+            buckets.computeIfAbsent(stackKey, k -> ConcurrentHashMap.newKeySet()).add(stackEntity);
+            return buckets;
+        });
+    }
+
+    /**
+     * Removes the given stack from this grid.
+     * @param stackEntity the stack to remove.
+     */
+    public void remove(StackEntity stackEntity) {
+        if (stackEntity.grid != this) {
+            return;
+        }
+        StackKey stackKey = stackEntity.gridKey;
+        cells.computeIfPresent(stackEntity.gridCell, (key, buckets) -> {
+            buckets.computeIfPresent(stackKey, (k, set) -> {
+                set.remove(stackEntity);
+                return set.isEmpty() ? null : set;
+            });
+            return buckets.isEmpty() ? null : buckets;
+        });
+        stackEntity.grid = null;
+        stackEntity.gridKey = null;
+    }
+
+    /**
+     * Finds the stacks which are within the given distance of the given stack, on each axis, and have the same key.
+     * @param original the stack at the centre of the search area. This stack is not included in the result.
+     * @param rangeX the search distance on the x axis.
+     * @param rangeY the search distance on the y axis.
+     * @param rangeZ the search distance on the z axis.
+     * @return the stacks which are within the search area.
+     */
+    public List<StackEntity> getNearby(StackEntity original, double rangeX, double rangeY, double rangeZ) {
+        return getNearby(original, original.gridKey, original.gridX, original.gridY, original.gridZ, rangeX, rangeY, rangeZ);
+    }
+
+    /**
+     * Finds the stacks which are within the given distance of the given position, on each axis, and have the given key.
+     * @param stackKey the key which the stacks need to have.
+     * @param x the x coordinate of the centre of the search area.
+     * @param y the y coordinate of the centre of the search area.
+     * @param z the z coordinate of the centre of the search area.
+     * @param rangeX the search distance on the x axis.
+     * @param rangeY the search distance on the y axis.
+     * @param rangeZ the search distance on the z axis.
+     * @return the stacks which are within the search area.
+     */
+    public List<StackEntity> getNearby(StackKey stackKey, double x, double y, double z, double rangeX, double rangeY, double rangeZ) {
+        return getNearby(null, stackKey, x, y, z, rangeX, rangeY, rangeZ);
+    }
+
+    private List<StackEntity> getNearby(StackEntity original, StackKey stackKey, double x, double y, double z, double rangeX, double rangeY, double rangeZ) {
+        List<StackEntity> nearby = new ArrayList<>();
+        int minX = floorDiv(x - rangeX, cellX);
+        int maxX = floorDiv(x + rangeX, cellX);
+        int minY = floorDiv(y - rangeY, cellY);
+        int maxY = floorDiv(y + rangeY, cellY);
+        int minZ = floorDiv(z - rangeZ, cellZ);
+        int maxZ = floorDiv(z + rangeZ, cellZ);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    Map<StackKey, Set<StackEntity>> buckets = cells.get(pack(cx, cy, cz));
+                    if (buckets == null) {
+                        continue;
+                    }
+                    Set<StackEntity> set = buckets.get(stackKey);
+                    if (set == null) {
+                        continue;
+                    }
+                    for (StackEntity stackEntity : set) {
+                        if (stackEntity == original) {
+                            continue;
+                        }
+                        if (Math.abs(stackEntity.gridX - x) > rangeX) {
+                            continue;
+                        }
+                        if (Math.abs(stackEntity.gridY - y) > rangeY) {
+                            continue;
+                        }
+                        if (Math.abs(stackEntity.gridZ - z) > rangeZ) {
+                            continue;
+                        }
+                        nearby.add(stackEntity);
+                    }
+                }
+            }
+        }
+        return nearby;
+    }
+
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    private long toCell(double x, double y, double z) {
+        return pack(floorDiv(x, cellX), floorDiv(y, cellY), floorDiv(z, cellZ));
+    }
+
+    private static int floorDiv(double coord, int size) {
+        return (int) Math.floor(coord / size);
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0x1FFFFF) << 42 | ((long) y & 0x1FFFFF) << 21 | ((long) z & 0x1FFFFF);
+    }
+}
@@ -0,0 +1,51 @@
+package uk.antiperson.stackmob.entity;
+
+import org.bukkit.entity.EntityType;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The compatibility key of a stack, made up of its type, the values of its traits and its custom mob identity.
+ * Stacks with different keys can never stack together.
+ */
+public class StackKey {
+
+    /**
+     * A value which can be returned by a trait or hook when the entity should not stack with any other entity.
+     */
+    public static final Object UNIQUE = new Object();
+
+    private final EntityType type;
+    private final Object[] traits;
+    private final Object hook;
+    private final int hash;
+
+    public StackKey(EntityType type, Object[] traits, Object hook) {
+        this.type = type;
+        this.traits = traits;
+        this.hook = hook;
+        this.hash = 31 * (31 * type.hashCode() + Arrays.hashCode(traits)) + Objects.hashCode(hook);
+    }
+
+    public EntityType getType() {
+        return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StackKey)) {
+            return false;
+        }
+        StackKey stackKey = (StackKey) o;
+        return hash == stackKey.hash && type == stackKey.type && Arrays.equals(traits, stackKey.traits) && Objects.equals(hook, stackKey.hook);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+package uk.antiperson.stackmob.entity;
+
+import org.bukkit.Location;
+import uk.antiperson.stackmob.config.EntityConfig;
+
+import java.util.UUID;
+
+/**
+ * An immutable copy of the state of a stack which is needed to plan merges.
+ * Snapshots are taken on the thread which owns the entity, so that the plan can be made on another thread.
+ */
+public class StackSnapshot {
+
+    private final StackEntity stackEntity;
+    private final UUID world;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final int size;
+    private final int maxSize;
+    private final StackKey stackKey;
+    private final Integer[] range;
+    private final boolean thresholdEnabled;
+    private final int threshold;
+    private final boolean check;
+
+    /**
+     * Takes a snapshot of the given stack.
+     * @param stackEntity the stack to take a snapshot of.
+     * @param check whether matches should be searched for around this stack, or it should only be a candidate.
+     */
+    public StackSnapshot(StackEntity stackEntity, boolean check) {
+        EntityConfig entityConfig = stackEntity.getEntityConfig();
+        Location location = stackEntity.getEntity().getLocation();
+        this.stackEntity = stackEntity;
+        this.world = location.getWorld().getUID();
+        this.x = location.getX();
+        this.y = location.getY();
+        this.z = location.getZ();
+        this.size = stackEntity.getSize();
+        this.maxSize = stackEntity.getMaxSize();
+        this.stackKey = stackEntity.getStackKey();
+        this.range = entityConfig.getStackRadius();
+        this.thresholdEnabled = entityConfig.getStackThresholdEnabled();
+        this.threshold = entityConfig.getStackThreshold();
+        this.check = check;
+    }
+
+    /**
+     * Gets the stack this snapshot was taken of. This should not be used until the plan is applied.
+     * @return the stack this snapshot was taken of.
+     */
+    public StackEntity getStackEntity() {
+        return stackEntity;
+    }
+
+    public UUID getWorld() {
+        return world;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public StackKey getStackKey() {
+        return stackKey;
+    }
+
+    public Integer[] getRange() {
+        return range;
+    }
+
+    public boolean isThresholdEnabled() {
+        return thresholdEnabled;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public boolean isCheck() {
+        return check;
+    }
+}
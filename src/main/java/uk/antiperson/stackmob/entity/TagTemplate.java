@@ -0,0 +1,45 @@
+package uk.antiperson.stackmob.entity;
+
+import net.kyori.adventure.text.Component;
+import uk.antiperson.stackmob.utils.Utilities;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The display name format for a type of entity, with the type name already filled in.
+ * The display name for each stack size is only created once, and is then shared between all stacks that use this template.
+ */
+public class TagTemplate {
+
+    // display names for sizes above this are created each time, so a huge max size doesn't use lots of memory
+    private static final int MAX_CACHED_SIZE = 4096;
+
+    private final String format;
+    private final AtomicReferenceArray<Component> displayNames;
+
+    public TagTemplate(String format, String typeName, int maxSize) {
+        this.format = format.replace("%type%", typeName);
+        this.displayNames = new AtomicReferenceArray<>(Math.max(0, Math.min(maxSize, MAX_CACHED_SIZE)) + 1);
+    }
+
+    /**
+     * Gets the display name for a stack of the given size.
+     * @param size the size of the stack.
+     * @return the display name for a stack of the given size.
+     */
+    public Component getDisplayName(int size) {
+        if (size < 0 || size >= displayNames.length()) {
+            return createDisplayName(size);
+        }
+        Component displayName = displayNames.get(size);
+        if (displayName == null) {
+            displayName = createDisplayName(size);
+            displayNames.set(size, displayName);
+        }
+        return displayName;
+    }
+
+    private Component createDisplayName(int size) {
+        return Utilities.createComponent(format.replace("%size%", String.valueOf(size)));
+    }
+}
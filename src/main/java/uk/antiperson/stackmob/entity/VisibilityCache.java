@@ -0,0 +1,191 @@
+package uk.antiperson.stackmob.entity;
+
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+import uk.antiperson.stackmob.StackMob;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of line of sight checks, which are used both for stacking and for nametag visibility.
+ * Results are stored for the pair of blocks which the two eye locations are in, so entities that only move slightly
+ * do not need a new ray trace. A result is reused until it expires, or a block is changed in a chunk section which
+ * the line of sight could pass through.
+ */
+public class VisibilityCache {
+
+    private final StackMob sm;
+    private final Map<Key, Entry> entries;
+    // the last time a block was changed in each chunk section, in each world
+    private final Map<UUID, Map<Long, Long>> sectionChanges;
+    private final LongAdder lookups;
+    private final LongAdder hits;
+    private volatile boolean enabled;
+    private volatile long ttl;
+
+    public VisibilityCache(StackMob sm) {
+        this.sm = sm;
+        this.entries = new ConcurrentHashMap<>();
+        this.sectionChanges = new ConcurrentHashMap<>();
+        this.lookups = new LongAdder();
+        this.hits = new LongAdder();
+    }
+
+    /**
+     * Reads the cache settings from the config, and clears the cache.
+     */
+    public void reload() {
+        enabled = sm.getMainConfig().getConfig().isLineOfSightCacheEnabled();
+        ttl = TimeUnit.MILLISECONDS.toNanos(sm.getMainConfig().getConfig().getLineOfSightCacheTtl() * 50L);
+        entries.clear();
+        sectionChanges.clear();
+    }
+
+    /**
+     * Checks whether there are any blocks between the two given locations, using a cached result if possible.
+     * @param from the location to check from.
+     * @param to the location to check to. This needs to be in the same world.
+     * @return whether there are no blocks between the two locations.
+     */
+    public boolean canSee(Location from, Location to) {
+        if (!enabled) {
+            return rayTrace(from, to);
+        }
+        lookups.increment();
+        UUID world = from.getWorld().getUID();
+        long first = pack(from.getBlockX(), from.getBlockY(), from.getBlockZ());
+        long second = pack(to.getBlockX(), to.getBlockY(), to.getBlockZ());
+        // the order does not matter, so the same result is used in both directions
+        Key key = first < second ? new Key(world, first, second) : new Key(world, second, first);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.time < ttl && !hasChanged(from, to, entry.time)) {
+            hits.increment();
+            return entry.visible;
+        }
+        boolean visible = rayTrace(from, to);
+        entries.put(key, new Entry(visible, now));
+        return visible;
+    }
+
+    /**
+     * Records that a block has changed, so that results which could be affected are no longer used.
+     * @param block the block which has changed.
+     */
+    public void markChanged(Block block) {
+        if (!enabled) {
+            return;
+        }
+        long section = pack(block.getX() >> 4, block.getY() >> 4, block.getZ() >> 4);
+        sectionChanges.computeIfAbsent(block.getWorld().getUID(), uuid -> new ConcurrentHashMap<>()).put(section, System.nanoTime());
+    }
+
+    /**
+     * Removes results and block changes which are older than the time to live, since they will never be used again.
+     */
+    public void cleanup() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> now - entry.time >= ttl);
+        for (Map<Long, Long> changes : sectionChanges.values()) {
+            changes.values().removeIf(time -> now - time >= ttl);
+        }
+    }
+
+    private boolean hasChanged(Location from, Location to, long since) {
+        Map<Long, Long> changes = sectionChanges.get(from.getWorld().getUID());
+        if (changes == null || changes.isEmpty()) {
+            return false;
+        }
+        int minX = Math.min(from.getBlockX(), to.getBlockX()) >> 4;
+        int maxX = Math.max(from.getBlockX(), to.getBlockX()) >> 4;
+        int minY = Math.min(from.getBlockY(), to.getBlockY()) >> 4;
+        int maxY = Math.max(from.getBlockY(), to.getBlockY()) >> 4;
+        int minZ = Math.min(from.getBlockZ(), to.getBlockZ()) >> 4;
+        int maxZ = Math.max(from.getBlockZ(), to.getBlockZ()) >> 4;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    Long changed = changes.get(pack(x, y, z));
+                    if (changed != null && changed >= since) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean rayTrace(Location from, Location to) {
+        Vector resultant = to.toVector().subtract(from.toVector());
+        double distance = from.distance(to);
+        if (distance == 0 || resultant.lengthSquared() == 0) {
+            return true;
+        }
+        RayTraceResult result = from.getWorld().rayTraceBlocks(from, resultant, distance, FluidCollisionMode.NEVER, true);
+        return result == null || result.getHitBlock() == null;
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | ((long) y & 0xFFF);
+    }
+
+    private static class Key {
+
+        private final UUID world;
+        private final long first;
+        private final long second;
+
+        private Key(UUID world, long first, long second) {
+            this.world = world;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return first == key.first && second == key.second && world.equals(key.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * world.hashCode() + Long.hashCode(first)) + Long.hashCode(second);
+        }
+    }
+
+    private static class Entry {
+
+        private final boolean visible;
+        private final long time;
+
+        private Entry(boolean visible, long time) {
+            this.visible = visible;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package uk.antiperson.stackmob.entity.death;
+
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
+
+/**
+ * Creates the death method which is used when a stacked entity dies.
+ */
+@FunctionalInterface
+public interface DeathMethodFactory {
+
+    /**
+     * Creates a death method for the given stack.
+     * @param sm the plugin instance.
+     * @param dead the stack which has died.
+     * @return the death method to use.
+     */
+    DeathMethod create(StackMob sm, StackEntity dead);
+}
@@ -0,0 +1,50 @@
+package uk.antiperson.stackmob.entity.death;
+
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Stores the factory used to create the death method for each death type.
+ * Other plugins can replace the factory for a death type to change what happens for it. New death types can't be
+ * added, as the death type for each death is picked using the config.
+ */
+public class DeathMethodRegistry {
+
+    private final StackMob sm;
+    // deaths are handled on region threads on Folia, so the map is copied and swapped rather than changed in place
+    private volatile Map<DeathType, DeathMethodFactory> factories;
+
+    public DeathMethodRegistry(StackMob sm) {
+        this.sm = sm;
+        Map<DeathType, DeathMethodFactory> defaults = new EnumMap<>(DeathType.class);
+        for (DeathType deathType : DeathType.values()) {
+            defaults.put(deathType, deathType.getFactory());
+        }
+        this.factories = defaults;
+    }
+
+    /**
+     * Replaces the factory which is used to create the death method for the given death type.
+     * @param deathType the death type.
+     * @param factory the factory to use.
+     */
+    public synchronized void register(DeathType deathType, DeathMethodFactory factory) {
+        Map<DeathType, DeathMethodFactory> copy = new EnumMap<>(factories);
+        copy.put(deathType, Objects.requireNonNull(factory));
+        factories = copy;
+    }
+
+    /**
+     * Creates the death method for the given death type.
+     * @param deathType the death type.
+     * @param dead the stack which has died.
+     * @return the death method to use.
+     */
+    public DeathMethod create(DeathType deathType, StackEntity dead) {
+        return factories.get(deathType).create(sm, dead);
+    }
+}
@@ -1,17 +1,23 @@
 package uk.antiperson.stackmob.entity.death;
 
 public enum DeathType {
-    SINGLE(KillSingle.class),
-    ALL(KillAll.class),
-    STEP(KillStep.class),
-    STEP_DAMAGE(KillStepDamage.class);
+    SINGLE(KillSingle.class, KillSingle::new),
+    ALL(KillAll.class, KillAll::new),
+    STEP(KillStep.class, KillStep::new),
+    STEP_DAMAGE(KillStepDamage.class, KillStepDamage::new);
 
     private final Class<? extends DeathMethod> dclass;
-    DeathType(Class<? extends DeathMethod> dclass) {
+    private final DeathMethodFactory factory;
+    DeathType(Class<? extends DeathMethod> dclass, DeathMethodFactory factory) {
         this.dclass = dclass;
+        this.factory = factory;
     }
 
     public Class<? extends DeathMethod> getStepClass() {
         return dclass;
     }
+
+    public DeathMethodFactory getFactory() {
+        return factory;
+    }
 }
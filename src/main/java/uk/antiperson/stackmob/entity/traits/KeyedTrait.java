@@ -0,0 +1,14 @@
+package uk.antiperson.stackmob.entity.traits;
+
+import org.bukkit.entity.LivingEntity;
+
+public interface KeyedTrait<T extends LivingEntity> extends Trait<T> {
+
+    /**
+     * Get the value of this trait for the given entity, which is used to build the key of a stack.
+     * Two entities should only have equal values if {@link #checkTrait(LivingEntity, LivingEntity)} would allow them to stack.
+     * @param entity the entity to get the value for.
+     * @return the value of this trait for the given entity.
+     */
+    Object getKey(T entity);
+}
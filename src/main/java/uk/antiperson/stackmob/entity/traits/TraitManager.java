@@ -9,18 +9,23 @@ import uk.antiperson.stackmob.utils.Utilities;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class TraitManager {
 
     private final Map<EntityType, Set<Trait<LivingEntity>>> traits;
+    // traits which can be compared through the stack key, in a fixed order so that the keys line up
+    private final Map<EntityType, List<KeyedTrait<LivingEntity>>> keyedTraits;
     private final StackMob sm;
     public TraitManager(StackMob sm) {
         this.sm = sm;
         this.traits = new EnumMap<>(EntityType.class);
+        this.keyedTraits = new EnumMap<>(EntityType.class);
     }
 
     public void registerTraits() throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
@@ -74,10 +79,30 @@ public class TraitManager {
         for (EntityType entityType : EntityType.values()) {
             if (entityType.getEntityClass() != null && typeArgument.isAssignableFrom(entityType.getEntityClass())) {
                 traits.computeIfAbsent(entityType, type -> new HashSet<>()).add(trait);
+                if (trait instanceof KeyedTrait) {
+                    keyedTraits.computeIfAbsent(entityType, type -> new ArrayList<>()).add((KeyedTrait<LivingEntity>) trait);
+                }
             }
         }
     }
 
+    /**
+     * Gets the values of the keyed traits of the given entity, to be used in its stack key.
+     * @param stackEntity the entity to get the trait values of.
+     * @return the values of the keyed traits of the given entity.
+     */
+    public Object[] getTraitKeys(StackEntity stackEntity) {
+        List<KeyedTrait<LivingEntity>> list = keyedTraits.get(stackEntity.getEntity().getType());
+        if (list == null) {
+            return new Object[0];
+        }
+        Object[] keys = new Object[list.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = list.get(i).getKey(stackEntity.getEntity());
+        }
+        return keys;
+    }
+
     /**
      * Check if the two given entities have any non-matching characteristics which prevent stacking.
      * @param first 1st entity to check
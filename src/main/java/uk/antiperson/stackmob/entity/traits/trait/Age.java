@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Ageable;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "age")
-public class Age implements Trait<Ageable> {
+public class Age implements KeyedTrait<Ageable> {
 
     @Override
     public boolean checkTrait(Ageable first, Ageable nearby) {
@@ -16,4 +16,9 @@ public class Age implements Trait<Ageable> {
     public void applyTrait(Ageable spawned, Ageable dead) {
         spawned.setAge(dead.getAge());
     }
+
+    @Override
+    public Object getKey(Ageable entity) {
+        return entity.isAdult();
+    }
 }
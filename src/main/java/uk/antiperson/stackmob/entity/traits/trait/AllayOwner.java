@@ -2,11 +2,11 @@ package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Allay;
 import org.bukkit.entity.memory.MemoryKey;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "allay-owner")
-public class AllayOwner implements Trait<Allay> {
+public class AllayOwner implements KeyedTrait<Allay> {
 
     @Override
     public boolean checkTrait(Allay first, Allay nearby) {
@@ -17,4 +17,9 @@ public class AllayOwner implements Trait<Allay> {
     public void applyTrait(Allay spawned, Allay dead) {
         spawned.setMemory(MemoryKey.LIKED_PLAYER, dead.getMemory(MemoryKey.LIKED_PLAYER));
     }
+
+    @Override
+    public Object getKey(Allay entity) {
+        return entity.getMemory(MemoryKey.LIKED_PLAYER);
+    }
 }
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Bee;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "bee-nectar")
-public class BeeNectar implements Trait<Bee> {
+public class BeeNectar implements KeyedTrait<Bee> {
     @Override
     public boolean checkTrait(Bee first, Bee nearby) {
         return first.hasNectar() != nearby.hasNectar();
@@ -15,4 +15,9 @@ public class BeeNectar implements Trait<Bee> {
     public void applyTrait(Bee spawned, Bee dead) {
         spawned.setHasNectar(spawned.hasNectar());
     }
+
+    @Override
+    public Object getKey(Bee entity) {
+        return entity.hasNectar();
+    }
 }
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Bee;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "bee-stung")
-public class BeeStung implements Trait<Bee> {
+public class BeeStung implements KeyedTrait<Bee> {
     @Override
     public boolean checkTrait(Bee first, Bee nearby) {
         return first.hasStung() != nearby.hasStung();
@@ -15,5 +15,9 @@ public class BeeStung implements Trait<Bee> {
     public void applyTrait(Bee spawned, Bee dead) {
         spawned.setHasStung(dead.hasStung());
     }
-}
 
+    @Override
+    public Object getKey(Bee entity) {
+        return entity.hasStung();
+    }
+}
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Animals;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "breed-mode")
-public class BreedMode implements Trait<Animals> {
+public class BreedMode implements KeyedTrait<Animals> {
 
     @Override
     public boolean checkTrait(Animals first, Animals nearby) {
@@ -16,4 +16,9 @@ public class BreedMode implements Trait<Animals> {
     public void applyTrait(Animals spawned, Animals dead) {
         spawned.setBreed(dead.canBreed());
     }
+
+    @Override
+    public Object getKey(Animals entity) {
+        return entity.canBreed();
+    }
 }
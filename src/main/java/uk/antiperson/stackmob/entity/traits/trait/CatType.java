@@ -3,11 +3,11 @@ package uk.antiperson.stackmob.entity.traits.trait;
 import org.bukkit.entity.Cat;
 import org.bukkit.entity.LivingEntity;
 import org.checkerframework.checker.units.qual.C;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "cat-type")
-public class CatType implements Trait<Cat> {
+public class CatType implements KeyedTrait<Cat> {
 
     @Override
     public boolean checkTrait(Cat first, Cat nearby) {
@@ -18,4 +18,9 @@ public class CatType implements Trait<Cat> {
     public void applyTrait(Cat spawned, Cat dead) {
         spawned.setCatType(dead.getCatType());
     }
+
+    @Override
+    public Object getKey(Cat entity) {
+        return entity.getCatType();
+    }
 }
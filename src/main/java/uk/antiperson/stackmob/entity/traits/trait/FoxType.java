@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Fox;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "fox-type")
-public class FoxType implements Trait<Fox> {
+public class FoxType implements KeyedTrait<Fox> {
 
     @Override
     public boolean checkTrait(Fox first, Fox nearby) {
@@ -16,4 +16,9 @@ public class FoxType implements Trait<Fox> {
     public void applyTrait(Fox spawned, Fox dead) {
         spawned.setFoxType(dead.getFoxType());
     }
+
+    @Override
+    public Object getKey(Fox entity) {
+        return entity.getFoxType();
+    }
 }
@@ -2,11 +2,11 @@ package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Frog;
 import org.bukkit.entity.LivingEntity;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "frog-variant")
-public class FrogVariant implements Trait<Frog> {
+public class FrogVariant implements KeyedTrait<Frog> {
 
     @Override
     public boolean checkTrait(Frog first, Frog nearby) {
@@ -17,4 +17,9 @@ public class FrogVariant implements Trait<Frog> {
     public void applyTrait(Frog spawned, Frog dead) {
         spawned.setVariant(dead.getVariant());
     }
+
+    @Override
+    public Object getKey(Frog entity) {
+        return entity.getVariant();
+    }
 }
@@ -1,11 +1,13 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Horse;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
+import java.util.Arrays;
+
 @TraitMetadata(path = "horse-color")
-public class HorseColor implements Trait<Horse> {
+public class HorseColor implements KeyedTrait<Horse> {
 
     @Override
     public boolean checkTrait(Horse first, Horse nearby) {
@@ -18,4 +20,9 @@ public class HorseColor implements Trait<Horse> {
         spawned.setColor(dead.getColor());
         spawned.setStyle(spawned.getStyle());
     }
+
+    @Override
+    public Object getKey(Horse entity) {
+        return Arrays.asList(entity.getColor(), entity.getStyle());
+    }
 }
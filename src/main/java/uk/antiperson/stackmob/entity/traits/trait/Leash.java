@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Mob;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "leashed")
-public class Leash implements Trait<Mob> {
+public class Leash implements KeyedTrait<Mob> {
 
     @Override
     public boolean checkTrait(Mob first, Mob nearby) {
@@ -22,4 +22,9 @@ public class Leash implements Trait<Mob> {
         }
         spawned.setLeashHolder(dead.getLeashHolder());
     }
+
+    @Override
+    public Object getKey(Mob entity) {
+        return entity.isLeashed() ? entity.getLeashHolder() : null;
+    }
 }
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Llama;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "llama-color")
-public class LlamaColor implements Trait<Llama> {
+public class LlamaColor implements KeyedTrait<Llama> {
 
     @Override
     public boolean checkTrait(Llama first, Llama nearby) {
@@ -16,4 +16,9 @@ public class LlamaColor implements Trait<Llama> {
     public void applyTrait(Llama spawned, Llama dead) {
         spawned.setColor(dead.getColor());
     }
+
+    @Override
+    public Object getKey(Llama entity) {
+        return entity.getColor();
+    }
 }
@@ -1,11 +1,12 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Animals;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.StackKey;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "love-mode")
-public class LoveMode implements Trait<Animals> {
+public class LoveMode implements KeyedTrait<Animals> {
 
     @Override
     public boolean checkTrait(Animals first, Animals nearby) {
@@ -16,4 +17,10 @@ public class LoveMode implements Trait<Animals> {
     public void applyTrait(Animals spawned, Animals dead) {
         spawned.setLoveModeTicks(spawned.getLoveModeTicks());
     }
+
+    @Override
+    public Object getKey(Animals entity) {
+        // animals in love mode never stack, so they are given a unique key
+        return entity.getLoveModeTicks() != 0 ? StackKey.UNIQUE : null;
+    }
 }
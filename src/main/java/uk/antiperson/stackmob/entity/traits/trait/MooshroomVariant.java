@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.MushroomCow;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "mooshroom-variant")
-public class MooshroomVariant implements Trait<MushroomCow> {
+public class MooshroomVariant implements KeyedTrait<MushroomCow> {
 
     @Override
     public boolean checkTrait(MushroomCow first, MushroomCow nearby) {
@@ -16,4 +16,9 @@ public class MooshroomVariant implements Trait<MushroomCow> {
     public void applyTrait(MushroomCow spawned, MushroomCow dead) {
         spawned.setVariant(dead.getVariant());
     }
+
+    @Override
+    public Object getKey(MushroomCow entity) {
+        return entity.getVariant();
+    }
 }
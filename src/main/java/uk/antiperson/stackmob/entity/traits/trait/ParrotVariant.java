@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Parrot;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "parrot-variant")
-public class ParrotVariant implements Trait<Parrot> {
+public class ParrotVariant implements KeyedTrait<Parrot> {
 
     @Override
     public boolean checkTrait(Parrot first, Parrot nearby) {
@@ -16,4 +16,9 @@ public class ParrotVariant implements Trait<Parrot> {
     public void applyTrait(Parrot spawned, Parrot dead) {
         spawned.setVariant(spawned.getVariant());
     }
+
+    @Override
+    public Object getKey(Parrot entity) {
+        return entity.getVariant();
+    }
 }
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Piglin;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "piglin-baby")
-public class PiglinBaby implements Trait<Piglin> {
+public class PiglinBaby implements KeyedTrait<Piglin> {
 
     @Override
     public boolean checkTrait(Piglin first, Piglin nearby) {
@@ -16,4 +16,9 @@ public class PiglinBaby implements Trait<Piglin> {
     public void applyTrait(Piglin spawned, Piglin dead) {
         spawned.setBaby(dead.isBaby());
     }
+
+    @Override
+    public Object getKey(Piglin entity) {
+        return entity.isBaby();
+    }
 }
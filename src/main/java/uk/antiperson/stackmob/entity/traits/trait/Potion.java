@@ -2,11 +2,11 @@ package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Mob;
 import org.bukkit.potion.PotionEffect;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "potion-effect")
-public class Potion implements Trait<Mob> {
+public class Potion implements KeyedTrait<Mob> {
 
     @Override
     public boolean checkTrait(Mob first, Mob nearby) {
@@ -19,4 +19,9 @@ public class Potion implements Trait<Mob> {
             spawned.addPotionEffect(potionEffect);
         }
     }
+
+    @Override
+    public Object getKey(Mob entity) {
+        return null;
+    }
 }
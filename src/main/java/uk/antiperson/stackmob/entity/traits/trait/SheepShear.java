@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Sheep;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "sheep-sheared")
-public class SheepShear implements Trait<Sheep> {
+public class SheepShear implements KeyedTrait<Sheep> {
 
     @Override
     public boolean checkTrait(Sheep first, Sheep nearby) {
@@ -16,4 +16,9 @@ public class SheepShear implements Trait<Sheep> {
     public void applyTrait(Sheep spawned, Sheep dead) {
         spawned.setSheared(dead.isSheared());
     }
+
+    @Override
+    public Object getKey(Sheep entity) {
+        return entity.isSheared();
+    }
 }
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Slime;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "slime-size")
-public class SlimeSize implements Trait<Slime> {
+public class SlimeSize implements KeyedTrait<Slime> {
 
     @Override
     public boolean checkTrait(Slime first, Slime nearby) {
@@ -16,4 +16,9 @@ public class SlimeSize implements Trait<Slime> {
     public void applyTrait(Slime spawned, Slime dead) {
         spawned.setSize(dead.getSize());
     }
+
+    @Override
+    public Object getKey(Slime entity) {
+        return entity.getSize();
+    }
 }
@@ -1,11 +1,12 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Turtle;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.StackKey;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "has-egg")
-public class TurtleHasEgg implements Trait<Turtle> {
+public class TurtleHasEgg implements KeyedTrait<Turtle> {
 
     @Override
     public boolean checkTrait(Turtle first, Turtle nearby) {
@@ -16,4 +17,10 @@ public class TurtleHasEgg implements Trait<Turtle> {
     public void applyTrait(Turtle spawned, Turtle dead) {
         spawned.setHasEgg(spawned.hasEgg());
     }
-}
\ No newline at end of file
+
+    @Override
+    public Object getKey(Turtle entity) {
+        // turtles with eggs never stack, so they are given a unique key
+        return entity.hasEgg() ? StackKey.UNIQUE : null;
+    }
+}
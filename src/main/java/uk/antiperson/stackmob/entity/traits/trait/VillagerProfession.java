@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Villager;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "villager-profession")
-public class VillagerProfession implements Trait<Villager> {
+public class VillagerProfession implements KeyedTrait<Villager> {
 
     @Override
     public boolean checkTrait(Villager first, Villager nearby) {
@@ -16,4 +16,9 @@ public class VillagerProfession implements Trait<Villager> {
     public void applyTrait(Villager spawned, Villager dead) {
         spawned.setProfession(dead.getProfession());
     }
+
+    @Override
+    public Object getKey(Villager entity) {
+        return entity.getProfession();
+    }
 }
@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Zoglin;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "zoglin-baby")
-public class ZoglinBaby implements Trait<Zoglin> {
+public class ZoglinBaby implements KeyedTrait<Zoglin> {
 
     @Override
     public boolean checkTrait(Zoglin first, Zoglin nearby) {
@@ -16,4 +16,9 @@ public class ZoglinBaby implements Trait<Zoglin> {
     public void applyTrait(Zoglin spawned, Zoglin dead) {
         spawned.setBaby(dead.isBaby());
     }
+
+    @Override
+    public Object getKey(Zoglin entity) {
+        return entity.isBaby();
+    }
 }
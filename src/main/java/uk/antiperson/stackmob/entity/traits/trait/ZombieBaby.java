@@ -1,11 +1,11 @@
 package uk.antiperson.stackmob.entity.traits.trait;
 
 import org.bukkit.entity.Zombie;
-import uk.antiperson.stackmob.entity.traits.Trait;
+import uk.antiperson.stackmob.entity.traits.KeyedTrait;
 import uk.antiperson.stackmob.entity.traits.TraitMetadata;
 
 @TraitMetadata(path = "age")
-public class ZombieBaby implements Trait<Zombie> {
+public class ZombieBaby implements KeyedTrait<Zombie> {
 
     @Override
     public boolean checkTrait(Zombie first, Zombie nearby) {
@@ -16,4 +16,9 @@ public class ZombieBaby implements Trait<Zombie> {
     public void applyTrait(Zombie spawned, Zombie dead) {
         spawned.setBaby(dead.isBaby());
     }
+
+    @Override
+    public Object getKey(Zombie entity) {
+        return entity.isBaby();
+    }
 }
@@ -5,6 +5,7 @@ import org.bukkit.entity.LivingEntity;
 import org.bukkit.event.Listener;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.entity.StackKey;
 import uk.antiperson.stackmob.hook.hooks.*;
 
 import java.lang.reflect.Constructor;
@@ -98,6 +99,25 @@ public class HookManager {
         return hookClass.getConstructor().newInstance();
     }
 
+    /**
+     * Gets the part of the stack key which comes from hooks. Custom mobs which should never stack are given a unique key.
+     * Stackable custom mobs are still compared in {@link #checkHooks(StackEntity, StackEntity)}, as they can stack with
+     * entities that are not custom mobs.
+     * @param entity the entity to get the key of.
+     * @return {@link StackKey#UNIQUE} if the entity should never stack, otherwise null.
+     */
+    public Object getHookKey(StackEntity entity) {
+        for (Hook hook : hooks) {
+            if (hook instanceof PreventStackHook) {
+                PreventStackHook smh = (PreventStackHook) hook;
+                if (smh.isCustomMob(entity.getEntity())) {
+                    return StackKey.UNIQUE;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Checks if the two given entities should not stack together.
      * @param first the first entity to check.
@@ -3,7 +3,11 @@ package uk.antiperson.stackmob.hook.hooks;
 import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.ListenerPriority;
+import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.events.ScheduledPacket;
 import com.comphenix.protocol.wrappers.WrappedChatComponent;
 import com.comphenix.protocol.wrappers.WrappedDataValue;
 import com.comphenix.protocol.wrappers.WrappedDataWatcher;
@@ -14,30 +18,183 @@ import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
+import org.joml.Vector3f;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.hook.Hook;
 import uk.antiperson.stackmob.hook.HookMetadata;
 import uk.antiperson.stackmob.utils.Utilities;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @HookMetadata(name = "ProtocolLib", config = "protocollib")
 public class ProtocolLibHook extends Hook {
 
+    // the client will not accept bundles with more packets than this
+    private static final int MAX_BUNDLE_SIZE = 4096;
+    private static final int MAX_CACHED_NAMES = 1024;
+
     private ProtocolManager protocolManager;
     private int entityIdCounter;
+    private final Map<Player, List<PacketContainer>> queued;
+    // most stacks have the same few names, so the chat handle for each name is shared between all tags and players
+    private final Map<Component, Object> nameHandles;
+    // the text display tag riding each entity, for each player, which the client needs to be told about again whenever
+    // the server sends the passengers of the entity
+    private final Map<UUID, Map<Integer, Integer>> textDisplays;
+    // only listened for once a text display has been spawned, so servers which don't use them don't pay for it
+    private volatile boolean listeningForMounts;
     public ProtocolLibHook(StackMob sm) {
         super(sm);
         this.entityIdCounter = Integer.MAX_VALUE / 2;
+        this.queued = new ConcurrentHashMap<>();
+        this.textDisplays = new ConcurrentHashMap<>();
+        this.nameHandles = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Component, Object> eldest) {
+                return size() > MAX_CACHED_NAMES;
+            }
+        });
     }
 
     @Override
     public void onEnable() {
         protocolManager = ProtocolLibrary.getProtocolManager();
+        // tag passes send their own packets when they finish, this catches any packets queued outside of them
+        sm.getScheduler().runGlobalTaskTimer(sm, this::flush, 1, 1);
+    }
+
+    /**
+     * Starts listening for the server sending the passengers of entities, so that text display tags stay mounted.
+     */
+    private synchronized void listenForMounts() {
+        if (listeningForMounts) {
+            return;
+        }
+        listeningForMounts = true;
+        protocolManager.addPacketListener(new PacketAdapter(sm, ListenerPriority.NORMAL, PacketType.Play.Server.MOUNT, PacketType.Play.Server.SPAWN_ENTITY) {
+            @Override
+            public void onPacketSending(PacketEvent event) {
+                if (event.isPlayerTemporary()) {
+                    return;
+                }
+                Map<Integer, Integer> playerDisplays = textDisplays.get(event.getPlayer().getUniqueId());
+                if (playerDisplays == null || playerDisplays.isEmpty()) {
+                    return;
+                }
+                int vehicleId = event.getPacket().getIntegers().read(0);
+                Integer textDisplayId = playerDisplays.get(vehicleId);
+                if (textDisplayId == null) {
+                    return;
+                }
+                if (event.getPacketType() == PacketType.Play.Server.SPAWN_ENTITY) {
+                    // the entity has been sent to the player again, so anything riding it on the client is gone
+                    event.schedule(ScheduledPacket.fromSilent(createMountPacket(vehicleId, new int[]{textDisplayId}), event.getPlayer()));
+                    return;
+                }
+                keepMounted(event, vehicleId, textDisplayId);
+            }
+        });
+    }
+
+    /**
+     * Adds the text display tag to the passengers the server is sending for an entity, as otherwise the client would
+     * dismount the tag and it would no longer follow the entity.
+     */
+    private void keepMounted(PacketEvent event, int vehicleId, int textDisplayId) {
+        int[] passengerIds = event.getPacket().getIntegerArrays().read(0);
+        for (int passengerId : passengerIds) {
+            if (passengerId == textDisplayId) {
+                return;
+            }
+        }
+        int[] withTag = Arrays.copyOf(passengerIds, passengerIds.length + 1);
+        withTag[passengerIds.length] = textDisplayId;
+        // the same packet can be sent to other players, so it can't be changed
+        event.setPacket(createMountPacket(vehicleId, withTag));
+    }
+
+    private PacketContainer createMountPacket(int vehicleId, int[] passengerIds) {
+        PacketContainer packetContainer = new PacketContainer(PacketType.Play.Server.MOUNT);
+        packetContainer.getIntegers().write(0, vehicleId);
+        packetContainer.getIntegerArrays().write(0, passengerIds);
+        return packetContainer;
+    }
+
+    /**
+     * Gets the chat component handle for the given name, which can be written to the metadata of a packet.
+     * @param name the name to get the handle for.
+     * @return the chat component handle for the given name.
+     */
+    private Object getNameHandle(Component name) {
+        Object handle = nameHandles.get(name);
+        if (handle == null) {
+            // #getHandle() req on older than 1.19
+            handle = WrappedChatComponent.fromJson(GsonComponentSerializer.gson().serialize(name)).getHandle();
+            nameHandles.put(name, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Clears the cached chat component handles, so that names are serialized again.
+     */
+    public void clearNameCache() {
+        nameHandles.clear();
+    }
+
+    /**
+     * Queues a packet to be sent to the player when the queued packets are next flushed.
+     * @param player the player to send the packet to.
+     * @param packetContainer the packet to send.
+     */
+    private void queuePacket(Player player, PacketContainer packetContainer) {
+        // compute is atomic, so a packet can't be added to a list that is in the middle of being flushed
+        queued.compute(player, (key, packets) -> {
+            if (packets == null) {
+                packets = new ArrayList<>();
+            }
+            packets.add(packetContainer);
+            return packets;
+        });
+    }
+
+    /**
+     * Sends all the queued packets. Where the client supports it, the packets for each player are sent in a single bundle.
+     */
+    public void flush() {
+        for (Player player : queued.keySet()) {
+            flush(player);
+        }
+    }
+
+    /**
+     * Sends the packets queued for the given player straight away, in a single bundle if there is more than one.
+     * This should be called once a pass over the tags of a player has finished, so the packets don't wait for the next tick.
+     * @param player the player to send the queued packets to.
+     */
+    public void flush(Player player) {
+        List<PacketContainer> packets = queued.remove(player);
+        if (packets == null || !player.isOnline()) {
+            return;
+        }
+        if (packets.size() == 1 || !Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_19_4)) {
+            packets.forEach(packetContainer -> protocolManager.sendServerPacket(player, packetContainer));
+            return;
+        }
+        for (int i = 0; i < packets.size(); i += MAX_BUNDLE_SIZE) {
+            PacketContainer bundle = new PacketContainer(PacketType.Play.Server.BUNDLE);
+            bundle.getPacketBundles().write(0, packets.subList(i, Math.min(packets.size(), i + MAX_BUNDLE_SIZE)));
+            protocolManager.sendServerPacket(player, bundle);
+        }
     }
 
     /* https://github.com/Ste3et/FurnitureLib/commit/2f7c9adbe90716811ecc620c021bed0c727b10f0#diff-0f3b41bd8ab636343d5689cbcc1e2d008aa3b65454e5af09cba8059a4ac51bed */
@@ -60,7 +217,7 @@ public class ProtocolLibHook extends Hook {
         watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(3, WrappedDataWatcher.Registry.get(Boolean.class)), visible);
         packetContainer.getEntityModifier(entity.getWorld()).write(0, entity);
         writeWatchableObjects(watcher, packetContainer);
-        protocolManager.sendServerPacket(player, packetContainer);
+        queuePacket(player, packetContainer);
     }
 
     public int spawnFakeArmorStand(Player player, Location location, Component name) {
@@ -77,26 +234,25 @@ public class ProtocolLibHook extends Hook {
         PacketContainer packetContainer1 = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
         WrappedDataWatcher watcher = new WrappedDataWatcher();
         watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(0, WrappedDataWatcher.Registry.get(Byte.class)), (byte) 0x20);
-        // #getHandle() req on older than 1.19
-        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(2, WrappedDataWatcher.Registry.getChatComponentSerializer(true)), Optional.of(WrappedChatComponent.fromJson(GsonComponentSerializer.gson().serialize(name)).getHandle()));
+        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(2, WrappedDataWatcher.Registry.getChatComponentSerializer(true)), Optional.of(getNameHandle(name)));
         watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(3, WrappedDataWatcher.Registry.get(Boolean.class)), true);
         watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(5, WrappedDataWatcher.Registry.get(Boolean.class)), true);
         int markerPacketId = Utilities.getMinecraftVersion() == Utilities.MinecraftVersion.V1_16 ? 14 : 15;
         watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(markerPacketId, WrappedDataWatcher.Registry.get(Byte.class)), (byte) 0x10);
         packetContainer1.getIntegers().write(0, entityIdCounter);
         writeWatchableObjects(watcher, packetContainer1);
-        protocolManager.sendServerPacket(player, packetContainer);
-        protocolManager.sendServerPacket(player, packetContainer1);
+        queuePacket(player, packetContainer);
+        queuePacket(player, packetContainer1);
         return entityIdCounter;
     }
 
     public void updateTag(Player player, int id, Component newName) {
         PacketContainer packetContainer1 = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
         WrappedDataWatcher watcher = new WrappedDataWatcher();
-        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(2, WrappedDataWatcher.Registry.getChatComponentSerializer(true)), Optional.of(WrappedChatComponent.fromJson(GsonComponentSerializer.gson().serialize(newName)).getHandle()));
+        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(2, WrappedDataWatcher.Registry.getChatComponentSerializer(true)), Optional.of(getNameHandle(newName)));
         packetContainer1.getIntegers().write(0, id);
         writeWatchableObjects(watcher, packetContainer1);
-        protocolManager.sendServerPacket(player, packetContainer1);
+        queuePacket(player, packetContainer1);
     }
 
     public void teleport(Player player, int id, Location location) {
@@ -105,7 +261,73 @@ public class ProtocolLibHook extends Hook {
         packetContainer.getDoubles().write(0, location.getX());
         packetContainer.getDoubles().write(1, location.getY());
         packetContainer.getDoubles().write(2, location.getZ());
-        protocolManager.sendServerPacket(player, packetContainer);
+        queuePacket(player, packetContainer);
+    }
+
+    public void move(Player player, int id, short deltaX, short deltaY, short deltaZ) {
+        PacketContainer packetContainer = new PacketContainer(PacketType.Play.Server.REL_ENTITY_MOVE);
+        packetContainer.getIntegers().write(0, id);
+        packetContainer.getShorts().write(0, deltaX);
+        packetContainer.getShorts().write(1, deltaY);
+        packetContainer.getShorts().write(2, deltaZ);
+        packetContainer.getBooleans().write(0, false);
+        queuePacket(player, packetContainer);
+    }
+
+    public int spawnTextDisplay(Player player, Entity owner, Location location, Component name, float offset) {
+        if (!listeningForMounts) {
+            listenForMounts();
+        }
+        // spawn packet
+        entityIdCounter = Utilities.isPaper() ? Bukkit.getUnsafe().nextEntityId() : entityIdCounter + 1;
+        PacketContainer packetContainer = new PacketContainer(PacketType.Play.Server.SPAWN_ENTITY);
+        packetContainer.getIntegers().write(0, entityIdCounter);
+        packetContainer.getEntityTypeModifier().write(0, EntityType.TEXT_DISPLAY);
+        packetContainer.getUUIDs().write(0, UUID.randomUUID());
+        packetContainer.getDoubles().write(0, location.getX());
+        packetContainer.getDoubles().write(1, location.getY());
+        packetContainer.getDoubles().write(2, location.getZ());
+        // metadata packet, using the indexes from 1.20.2 onwards
+        PacketContainer packetContainer1 = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
+        WrappedDataWatcher watcher = new WrappedDataWatcher();
+        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(11, WrappedDataWatcher.Registry.get(Vector3f.class)), new Vector3f(0, offset, 0));
+        // billboard constraints: center, so the text always faces the player
+        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(15, WrappedDataWatcher.Registry.get(Byte.class)), (byte) 3);
+        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(23, WrappedDataWatcher.Registry.getChatComponentSerializer(false)), getNameHandle(name));
+        packetContainer1.getIntegers().write(0, entityIdCounter);
+        writeWatchableObjects(watcher, packetContainer1);
+        // mount packet, which has to include the passengers the entity already has
+        List<Entity> passengers = owner.getPassengers();
+        int[] passengerIds = new int[passengers.size() + 1];
+        for (int i = 0; i < passengers.size(); i++) {
+            passengerIds[i] = passengers.get(i).getEntityId();
+        }
+        passengerIds[passengers.size()] = entityIdCounter;
+        textDisplays.computeIfAbsent(player.getUniqueId(), uuid -> new ConcurrentHashMap<>()).put(owner.getEntityId(), entityIdCounter);
+        queuePacket(player, packetContainer);
+        queuePacket(player, packetContainer1);
+        queuePacket(player, createMountPacket(owner.getEntityId(), passengerIds));
+        return entityIdCounter;
+    }
+
+    public void removeTextDisplay(Player player, int ownerId, int id) {
+        Map<Integer, Integer> playerDisplays = textDisplays.get(player.getUniqueId());
+        if (playerDisplays != null) {
+            playerDisplays.remove(ownerId, id);
+            if (playerDisplays.isEmpty()) {
+                textDisplays.remove(player.getUniqueId(), playerDisplays);
+            }
+        }
+        removeFakeArmorStand(player, id);
+    }
+
+    public void updateTextDisplay(Player player, int id, Component newName) {
+        PacketContainer packetContainer1 = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
+        WrappedDataWatcher watcher = new WrappedDataWatcher();
+        watcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(23, WrappedDataWatcher.Registry.getChatComponentSerializer(false)), getNameHandle(newName));
+        packetContainer1.getIntegers().write(0, id);
+        writeWatchableObjects(watcher, packetContainer1);
+        queuePacket(player, packetContainer1);
     }
 
     public void removeFakeArmorStand(Player player, int id) {
@@ -115,6 +337,6 @@ public class ProtocolLibHook extends Hook {
         } else {
             packetContainer.getIntegerArrays().write(0, new int[]{id});
         }
-        protocolManager.sendServerPacket(player, packetContainer);
+        queuePacket(player, packetContainer);
     }
 }
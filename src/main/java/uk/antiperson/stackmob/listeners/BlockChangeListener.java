@@ -0,0 +1,33 @@
+package uk.antiperson.stackmob.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import uk.antiperson.stackmob.StackMob;
+
+@ListenerMetadata(config = "stack.line-of-sight-cache.enabled")
+public class BlockChangeListener implements Listener {
+
+    private final StackMob sm;
+    public BlockChangeListener(StackMob sm) {
+        this.sm = sm;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        sm.getVisibilityCache().markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        sm.getVisibilityCache().markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+        sm.getVisibilityCache().markChanged(event.getBlock());
+    }
+}
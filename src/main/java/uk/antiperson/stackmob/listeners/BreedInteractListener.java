@@ -65,5 +65,6 @@ public class BreedInteractListener implements Listener {
         // Update the adult
         animals.setBreed(false);
         animals.setBreedCause(event.getPlayer().getUniqueId());
+        stackEntity.invalidateStackKey();
     }
 }
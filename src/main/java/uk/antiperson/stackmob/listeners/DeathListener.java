@@ -18,7 +18,6 @@ import uk.antiperson.stackmob.events.EventHelper;
 import uk.antiperson.stackmob.events.StackDeathEvent;
 import uk.antiperson.stackmob.utils.Utilities;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
 public class DeathListener implements Listener {
@@ -83,11 +82,7 @@ public class DeathListener implements Listener {
 
     public DeathMethod calculateDeath(StackEntity entity) {
         DeathType deathType = entity.getEntityConfig().getDeathType(entity.getEntity());
-        try {
-            return deathType.getStepClass().getDeclaredConstructor(StackMob.class, StackEntity.class).newInstance(sm, entity);
-        } catch (InstantiationException | InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
-            throw new RuntimeException("Error while determining death step!");
-        }
+        return sm.getDeathMethodRegistry().create(deathType, entity);
     }
 
 
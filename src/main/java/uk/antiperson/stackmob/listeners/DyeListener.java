@@ -40,7 +40,9 @@ public class DyeListener implements Listener {
         }
         EntityConfig.ListenerMode mode = stackEntity.getEntityConfig().getListenerMode(EntityConfig.EventType.DYE);
         if (mode == EntityConfig.ListenerMode.SPLIT) {
-            ((Colorable) stackEntity.slice().getEntity()).setColor(sheep.getColor());
+            StackEntity slice = stackEntity.slice();
+            ((Colorable) slice.getEntity()).setColor(sheep.getColor());
+            slice.invalidateStackKey();
             return;
         }
         stackEntity.splitIfNotEnough(event.getPlayer().getInventory().getItemInMainHand().getAmount());
@@ -50,5 +52,6 @@ public class DyeListener implements Listener {
         }
         Utilities.removeHandItem(event.getPlayer(), stackEntity.getSize());
         sheep.setColor(DyeColor.valueOf(handItem.getType().toString().replace("_DYE", "")));
+        stackEntity.invalidateStackKey();
     }
 }
@@ -0,0 +1,41 @@
+package uk.antiperson.stackmob.listeners;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Mob;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
+
+/**
+ * Since 1.17, entities are loaded separately from chunks, so stacks are registered when their entities load.
+ */
+public class EntitiesLoadListener implements Listener {
+
+    private final StackMob sm;
+    public EntitiesLoadListener(StackMob sm) {
+        this.sm = sm;
+    }
+
+    @EventHandler
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        sm.getEntityManager().registerLoadedEntities(event.getEntities());
+    }
+
+    @EventHandler
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            if (!(entity instanceof Mob)) {
+                continue;
+            }
+            StackEntity stackEntity = sm.getEntityManager().getStackEntity((LivingEntity) entity);
+            if (stackEntity == null) {
+                continue;
+            }
+            sm.getEntityManager().unregisterStackedEntity(stackEntity);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package uk.antiperson.stackmob.listeners;
+
+import io.papermc.paper.event.entity.EntityMoveEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
+
+@ListenerMetadata(config = "stack.dirty-tracking.enabled")
+public class MoveListener implements Listener {
+
+    private final StackMob sm;
+    public MoveListener(StackMob sm) {
+        this.sm = sm;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityMove(EntityMoveEvent event) {
+        if (!event.hasChangedPosition()) {
+            return;
+        }
+        StackEntity stackEntity = sm.getEntityManager().getStackEntity(event.getEntity());
+        if (stackEntity == null) {
+            return;
+        }
+        sm.getEntityManager().checkMoved(stackEntity, event.getTo());
+    }
+}
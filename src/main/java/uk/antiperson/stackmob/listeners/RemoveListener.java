@@ -8,6 +8,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.utils.Utilities;
 
 public class RemoveListener implements Listener {
 
@@ -38,9 +39,26 @@ public class RemoveListener implements Listener {
             return;
         }
         LivingEntity livingEntity = (LivingEntity) event.getEntity();
+        if (sm.getEntityManager().isStackedEntity(livingEntity)) {
+            return;
+        }
         if (!sm.getEntityManager().hasStackData(livingEntity)) {
             return;
         }
-        sm.getEntityManager().registerStackedEntity(livingEntity);
+        if (!Utilities.isVersionAtLeast(Utilities.MinecraftVersion.V1_17)) {
+            sm.getEntityManager().registerStackedEntity(livingEntity);
+            return;
+        }
+        // entities which are loading are registered in batches when all the entities in the chunk have loaded,
+        // so only entities that are added in another way (e.g. changing world) need to be registered here
+        sm.getScheduler().runTask(sm, livingEntity, () -> {
+            if (!livingEntity.isValid() || sm.getEntityManager().isStackedEntity(livingEntity)) {
+                return;
+            }
+            if (sm.getEntityManager().isPendingRegistration(livingEntity)) {
+                return;
+            }
+            sm.getEntityManager().registerStackedEntity(livingEntity);
+        });
     }
 }
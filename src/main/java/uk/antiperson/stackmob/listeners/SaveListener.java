@@ -0,0 +1,55 @@
+package uk.antiperson.stackmob.listeners;
+
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Mob;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPortalEvent;
+import org.bukkit.event.entity.EntityTeleportEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
+
+// registered whether or not write-behind is enabled, as it can be enabled when the config is reloaded
+public class SaveListener implements Listener {
+
+    private final StackMob sm;
+    public SaveListener(StackMob sm) {
+        this.sm = sm;
+    }
+
+    @EventHandler
+    public void onWorldSave(WorldSaveEvent event) {
+        // not checking whether write-behind is enabled, as sizes could still be waiting from before it was disabled
+        sm.getEntityManager().flushSizes(event.getWorld());
+    }
+
+    // entities that change world are copied, so the size needs to be saved before the copy is made
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityPortal(EntityPortalEvent event) {
+        saveSize(event);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityTeleport(EntityTeleportEvent event) {
+        saveSize(event);
+    }
+
+    private void saveSize(EntityTeleportEvent event) {
+        if (!sm.getMainConfig().getConfig().isWriteBehind()) {
+            return;
+        }
+        if (!(event.getEntity() instanceof Mob) || event.getTo() == null) {
+            return;
+        }
+        if (event.getFrom().getWorld() == event.getTo().getWorld()) {
+            return;
+        }
+        StackEntity stackEntity = sm.getEntityManager().getStackEntity((LivingEntity) event.getEntity());
+        if (stackEntity == null) {
+            return;
+        }
+        stackEntity.saveSize();
+    }
+}
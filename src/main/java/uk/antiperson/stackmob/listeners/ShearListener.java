@@ -90,6 +90,7 @@ public class ShearListener implements Listener {
             StackEntity slice = stackEntity.slice();
             if (slice.getEntity() instanceof Sheep) {
                 ((Sheep) slice.getEntity()).setSheared(false);
+                slice.invalidateStackKey();
             }
             return null;
         }
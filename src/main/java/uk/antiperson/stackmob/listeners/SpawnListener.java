@@ -1,16 +1,17 @@
 package uk.antiperson.stackmob.listeners;
 
-import org.bukkit.entity.Bee;
-import org.bukkit.entity.Entity;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Mob;
-import org.bukkit.entity.ZombieVillager;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.config.EntityConfig;
 import uk.antiperson.stackmob.entity.StackEntity;
 import uk.antiperson.stackmob.events.EventHelper;
+import uk.antiperson.stackmob.utils.Utilities;
 
 public class SpawnListener implements Listener {
 
@@ -19,11 +20,31 @@ public class SpawnListener implements Listener {
         this.sm = sm;
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.HIGHEST)
     public void onSpawn(CreatureSpawnEvent event) {
         if (!(event.getEntity() instanceof Mob)) {
             return;
         }
+        // the spawn event is only called once for each entity, even if it falls back to spawning as normal
+        boolean spawnEventCalled = false;
+        if (!event.isCancelled() && canAbsorb(event)) {
+            // this stack is only used to compare against, it is never registered
+            StackEntity spawning = new StackEntity(sm, event.getEntity());
+            StackEntity absorber = findAbsorber(spawning, event.getSpawnReason());
+            if (absorber != null) {
+                if (EventHelper.callStackSpawnEvent(event.getEntity()).isCancelled()) {
+                    return;
+                }
+                spawnEventCalled = true;
+                // if the merge is cancelled, the entity spawns and is stacked as normal
+                if (!EventHelper.callStackMergeEvent(spawning, absorber).isCancelled()) {
+                    event.setCancelled(true);
+                    absorber.incrementSize(1);
+                    return;
+                }
+            }
+        }
+        final boolean skipSpawnEvent = spawnEventCalled;
         sm.getScheduler().runTask(sm, event.getEntity(), () -> {
             if (sm.getEntityManager().isStackedEntity(event.getEntity())) {
                 StackEntity stackEntity = sm.getEntityManager().getStackEntity(event.getEntity());
@@ -38,7 +59,7 @@ public class SpawnListener implements Listener {
             if (sm.getHookManager().spawnCheck(event.getEntity())) {
                 return;
             }
-            if (EventHelper.callStackSpawnEvent(event.getEntity()).isCancelled()) {
+            if (!skipSpawnEvent && EventHelper.callStackSpawnEvent(event.getEntity()).isCancelled()) {
                 return;
             }
             StackEntity original = sm.getEntityManager().registerStackedEntity(event.getEntity());
@@ -52,12 +73,11 @@ public class SpawnListener implements Listener {
                 return;
             }
             Integer[] searchRadius = original.getEntityConfig().getStackRadius();
-            for (Entity entity : event.getEntity().getNearbyEntities(searchRadius[0], searchRadius[1], searchRadius[2])) {
-                if (!(entity instanceof Mob)) {
+            for (StackEntity nearby : sm.getEntityManager().getNearbyStacks(original, searchRadius)) {
+                if (!nearby.getEntity().isValid()) {
                     continue;
                 }
-                StackEntity nearby = sm.getEntityManager().getStackEntity((LivingEntity) entity);
-                if (nearby == null) {
+                if (!sm.getEntityManager().isInRange(event.getEntity().getLocation(), nearby, searchRadius)) {
                     continue;
                 }
                 if (!nearby.canStack()) {
@@ -77,4 +97,61 @@ public class SpawnListener implements Listener {
             }
         });
     }
+
+    private boolean canAbsorb(CreatureSpawnEvent event) {
+        if (event.getSpawnReason() == CreatureSpawnEvent.SpawnReason.CUSTOM) {
+            return false;
+        }
+        if (sm.getEntityManager().isSpawning()) {
+            return false;
+        }
+        EntityConfig entityConfig = sm.getMainConfig().getConfig(event.getEntityType());
+        if (!entityConfig.isStackOnSpawn() || !entityConfig.isAbsorbOnSpawn()) {
+            return false;
+        }
+        if (entityConfig.isEntityBlacklisted(event.getEntity(), event.getSpawnReason())) {
+            return false;
+        }
+        if (sm.getHookManager().spawnCheck(event.getEntity())) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds a stack which the given entity can be added to, without the entity having to spawn.
+     * @param original a stack for the entity which is spawning, which is not registered.
+     * @param spawnReason the reason the entity is spawning.
+     * @return the stack which the entity can be added to, or null if there is none.
+     */
+    private StackEntity findAbsorber(StackEntity original, CreatureSpawnEvent.SpawnReason spawnReason) {
+        LivingEntity entity = original.getEntity();
+        if (original.shouldWait(spawnReason)) {
+            return null;
+        }
+        EntityConfig entityConfig = original.getEntityConfig();
+        Integer[] searchRadius = entityConfig.getStackRadius();
+        for (StackEntity nearby : sm.getEntityManager().getNearbyStacks(original, entity.getLocation(), searchRadius)) {
+            if (Utilities.IS_FOLIA && !Bukkit.isOwnedByCurrentRegion(nearby.getEntity())) {
+                continue;
+            }
+            if (!nearby.getEntity().isValid()) {
+                continue;
+            }
+            if (!sm.getEntityManager().isInRange(entity.getLocation(), nearby, searchRadius)) {
+                continue;
+            }
+            if (!nearby.canStack()) {
+                continue;
+            }
+            if (entityConfig.getStackThresholdEnabled() && nearby.getSize() == 1) {
+                continue;
+            }
+            if (!original.match(nearby)) {
+                continue;
+            }
+            return nearby;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,184 @@
+package uk.antiperson.stackmob.listeners;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.block.Block;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Mob;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.SpawnerSpawnEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.events.EventHelper;
+import uk.antiperson.stackmob.utils.Utilities;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps a single stack for each spawner, which mobs spawned by that spawner are added to without being spawned.
+ * A new entity is only spawned when the current stack is full, or it has been killed or removed.
+ */
+@ListenerMetadata(config = "stack.spawner-accumulator")
+public class SpawnerListener implements Listener {
+
+    private final StackMob sm;
+    // the entity id of the accumulator for each spawner
+    private final Map<SpawnerKey, Integer> accumulators;
+    // the entity id of the new accumulator, which is registered once it has actually spawned
+    private final ThreadLocal<Integer> spawningAccumulator;
+    public SpawnerListener(StackMob sm) {
+        this.sm = sm;
+        this.accumulators = new ConcurrentHashMap<>();
+        this.spawningAccumulator = new ThreadLocal<>();
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onSpawnerSpawn(SpawnerSpawnEvent event) {
+        if (!(event.getEntity() instanceof Mob) || event.getSpawner() == null) {
+            return;
+        }
+        LivingEntity spawned = (LivingEntity) event.getEntity();
+        if (sm.getMainConfig().getConfig(spawned.getType()).isEntityBlacklisted(spawned, CreatureSpawnEvent.SpawnReason.SPAWNER)) {
+            return;
+        }
+        if (sm.getHookManager().spawnCheck(spawned)) {
+            return;
+        }
+        CreatureSpawner spawner = event.getSpawner();
+        SpawnerKey key = new SpawnerKey(spawner.getBlock());
+        // this stack is only used to compare against, it is never registered
+        StackEntity original = new StackEntity(sm, spawned);
+        StackEntity accumulator = getAccumulator(key, original);
+        if (accumulator == null) {
+            // let this entity spawn, it will take over from the old accumulator
+            accumulators.put(key, spawned.getEntityId());
+            spawningAccumulator.set(spawned.getEntityId());
+            return;
+        }
+        if (spawner.getDelay() > 0) {
+            // the whole of this spawn attempt has already been added to the accumulator
+            event.setCancelled(true);
+            return;
+        }
+        if (EventHelper.callStackSpawnEvent(spawned).isCancelled()) {
+            return;
+        }
+        if (EventHelper.callStackMergeEvent(original, accumulator).isCancelled()) {
+            return;
+        }
+        event.setCancelled(true);
+        accumulator.incrementSize(Math.min(spawner.getSpawnCount(), accumulator.getMaxSize() - accumulator.getSize()));
+        resetDelay(spawner);
+    }
+
+    /**
+     * Starts the delay until the next spawn attempt, which the spawner would otherwise only do if a mob was spawned.
+     * @param spawner the spawner to reset the delay of.
+     */
+    private void resetDelay(CreatureSpawner spawner) {
+        int minDelay = spawner.getMinSpawnDelay();
+        int maxDelay = spawner.getMaxSpawnDelay();
+        spawner.setDelay(maxDelay <= minDelay ? minDelay : ThreadLocalRandom.current().nextInt(minDelay, maxDelay));
+        spawner.update();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAccumulatorSpawn(CreatureSpawnEvent event) {
+        Integer entityId = spawningAccumulator.get();
+        if (entityId == null || entityId != event.getEntity().getEntityId()) {
+            return;
+        }
+        spawningAccumulator.remove();
+        if (event.isCancelled() || sm.getEntityManager().isStackedEntity(event.getEntity())) {
+            return;
+        }
+        if (EventHelper.callStackSpawnEvent(event.getEntity()).isCancelled()) {
+            return;
+        }
+        // registered straight away, without waiting, so that the rest of the mobs from this spawn attempt can be added to it
+        StackEntity accumulator = sm.getEntityManager().registerStackedEntity(event.getEntity());
+        sm.getHookManager().onSpawn(accumulator);
+        accumulator.setSize(1);
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        UUID worldId = chunk.getWorld().getUID();
+        accumulators.keySet().removeIf(key -> key.worldId.equals(worldId)
+                && key.x >> 4 == chunk.getX() && key.z >> 4 == chunk.getZ());
+    }
+
+    private StackEntity getAccumulator(SpawnerKey key, StackEntity original) {
+        LivingEntity spawned = original.getEntity();
+        Integer entityId = accumulators.get(key);
+        if (entityId == null) {
+            return null;
+        }
+        StackEntity accumulator = sm.getEntityManager().getStackEntity(entityId);
+        if (accumulator == null) {
+            return null;
+        }
+        LivingEntity entity = accumulator.getEntity();
+        if (!entity.isValid() || entity.getType() != spawned.getType()) {
+            return null;
+        }
+        if (Utilities.IS_FOLIA && !Bukkit.isOwnedByCurrentRegion(entity)) {
+            return null;
+        }
+        if (!accumulator.canStack()) {
+            return null;
+        }
+        if (!original.getStackKey().equals(accumulator.getStackKey())) {
+            return null;
+        }
+        if (sm.getTraitManager().checkTraits(original, accumulator)) {
+            return null;
+        }
+        if (sm.getHookManager().checkHooks(original, accumulator)) {
+            return null;
+        }
+        return accumulator;
+    }
+
+    private static final class SpawnerKey {
+
+        private final UUID worldId;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        private SpawnerKey(Block block) {
+            this.worldId = block.getWorld().getUID();
+            this.x = block.getX();
+            this.y = block.getY();
+            this.z = block.getZ();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SpawnerKey)) {
+                return false;
+            }
+            SpawnerKey other = (SpawnerKey) o;
+            return x == other.x && y == other.y && z == other.z && worldId.equals(other.worldId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worldId, x, y, z);
+        }
+    }
+}
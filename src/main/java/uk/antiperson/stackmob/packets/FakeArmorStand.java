@@ -8,14 +8,28 @@ import uk.antiperson.stackmob.utils.Utilities;
 
 public interface FakeArmorStand {
 
-    void spawnFakeArmorStand(Entity owner, Location location, Component name, double offset);
+    void spawnFakeArmorStand(Entity owner, Location location, Component name);
 
     void updateName(Component newName);
 
-    void teleport(Entity entity, double offset);
+    void teleport(Location location);
+
+    /**
+     * Moves the armor stand relative to where it was last sent to the player.
+     * Each delta is in 1/4096ths of a block, so it can move at most 8 blocks on each axis.
+     */
+    void move(short deltaX, short deltaY, short deltaZ);
 
     void removeFakeArmorStand();
 
+    /**
+     * Whether the client moves the tag along with the entity, meaning that it doesn't need to be moved with packets.
+     * @return whether the client moves the tag along with the entity.
+     */
+    default boolean isMovedByClient() {
+        return false;
+    }
+
     default Location adjustLocation(Entity entity, double offset) {
         double adjustment = shouldAdjust(entity) ? 0.3 : 0.1;
         if (offset > 0) {
@@ -1,48 +1,63 @@
 package uk.antiperson.stackmob.packets;
 
+import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Mob;
 import org.bukkit.entity.Player;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.hook.hooks.ProtocolLibHook;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PlayerWatcher {
 
+    // stacks which already have a tag are treated as this much closer (or larger), so tags don't flicker at the edge of the budget
+    private static final double HYSTERESIS = 0.8;
+
     private final StackMob sm;
     private final Player player;
     private final Map<UUID, TagHandler> lastRange;
+    private final LongAdder movePacketsSent;
+    private final LongAdder movePacketsSuppressed;
+    // how many stacks could have had a tag the last time the player was checked
+    private volatile int lastCandidates;
 
     public PlayerWatcher(StackMob sm, Player player) {
         this.sm = sm;
         this.player = player;
         this.lastRange = new ConcurrentHashMap<>();
+        this.movePacketsSent = new LongAdder();
+        this.movePacketsSuppressed = new LongAdder();
     }
 
     public void checkPlayer() {
         // get nearby entities to player
-        Set<StackEntity> nearby = getNearbyStacks();
-        Set<TagHandler> remaining = new HashSet<>(lastRange.values());
-        for (StackEntity iterated : nearby) {
-            if (iterated.getEntityConfig().getTagMode() != StackEntity.TagMode.NEARBY) {
-                continue;
-            }
-            int threshold = iterated.getEntityConfig().getTagThreshold();
-            if (iterated.getSize() <= threshold) {
-                continue;
-            }
-            TagHandler tagHandler = lastRange.get(iterated.getEntity().getUniqueId());
-            remaining.remove(tagHandler);
+        checkPlayer(getNearbyStacks());
+    }
+
+    /**
+     * Updates the tags this player can see, using the given stacks as the stacks which are in range.
+     * @param nearby the stacks which are in range of this player.
+     */
+    public void checkPlayer(Set<StackEntity> nearby) {
+        Map<UUID, TagHandler> remaining = new HashMap<>(lastRange);
+        for (StackEntity iterated : getTagged(nearby)) {
+            TagHandler tagHandler = remaining.remove(iterated.getEntity().getUniqueId());
             if (tagHandler == null) {
                 // entity is not currently being tracked, however is in range, so a packet should be sent
-                TagHandler newTagHandler = new TagHandler(sm, player, iterated);
+                TagHandler newTagHandler = new TagHandler(sm, this, iterated);
                 newTagHandler.init();
                 newTagHandler.newlyInRange();
                 lastRange.put(iterated.getEntity().getUniqueId(), newTagHandler);
@@ -52,22 +67,79 @@ public class PlayerWatcher {
             tagHandler.playerInRange();
         }
         // entities that are not in range
-        for (TagHandler wasInRange : remaining) {
+        for (Map.Entry<UUID, TagHandler> wasInRange : remaining.entrySet()) {
             // do packet unsending stuff
-            wasInRange.playerOutRange();
+            wasInRange.getValue().playerOutRange();
+            // stop tracking it, otherwise handlers for entities that have gone would build up forever
+            lastRange.remove(wasInRange.getKey(), wasInRange.getValue());
         }
+        flushPackets();
+    }
+
+    /**
+     * Gets the stacks which should have a tag shown to this player, keeping to the tag budget if there is one.
+     * @param nearby the stacks which are in range of this player.
+     * @return the stacks which should have a tag shown to this player.
+     */
+    private List<StackEntity> getTagged(Set<StackEntity> nearby) {
+        List<StackEntity> candidates = new ArrayList<>();
+        for (StackEntity iterated : nearby) {
+            if (iterated.getEntityConfig().getTagMode() != StackEntity.TagMode.NEARBY) {
+                continue;
+            }
+            int threshold = iterated.getEntityConfig().getTagThreshold();
+            if (iterated.getSize() <= threshold) {
+                continue;
+            }
+            candidates.add(iterated);
+        }
+        lastCandidates = candidates.size();
+        int maxTags = sm.getMainConfig().getConfig().getMaxTags();
+        if (maxTags <= 0 || candidates.size() <= maxTags) {
+            return candidates;
+        }
+        Location location = player.getLocation();
+        Map<StackEntity, Double> scores = new HashMap<>();
+        for (StackEntity candidate : candidates) {
+            scores.put(candidate, getScore(candidate, location));
+        }
+        candidates.sort(Comparator.comparingDouble(scores::get));
+        return candidates.subList(0, maxTags);
+    }
+
+    /**
+     * Works out the score of a stack for the tag budget. Stacks with a lower score get a tag first.
+     */
+    private double getScore(StackEntity stackEntity, Location location) {
+        boolean tagged = lastRange.containsKey(stackEntity.getEntity().getUniqueId());
+        if (sm.getMainConfig().getConfig().getTagPriority() == TagPriority.LARGEST) {
+            return -(tagged ? stackEntity.getSize() / HYSTERESIS : stackEntity.getSize());
+        }
+        double distance = stackEntity.getEntity().getLocation().distanceSquared(location);
+        return tagged ? distance * HYSTERESIS * HYSTERESIS : distance;
     }
 
     public void stopWatching() {
         for (TagHandler tagHandler : lastRange.values()) {
             tagHandler.playerOutRange();
         }
+        flushPackets();
     }
 
     public void updateTagLocations() {
         for (TagHandler tagHandler : lastRange.values()) {
             tagHandler.updateTag();
         }
+        flushPackets();
+    }
+
+    // sends the packets for this pass now, bundled together, rather than waiting for the next tick
+    private void flushPackets() {
+        ProtocolLibHook protocolLibHook = sm.getHookManager().getProtocolLibHook();
+        if (protocolLibHook == null) {
+            return;
+        }
+        protocolLibHook.flush(player);
     }
 
     private Set<StackEntity> getNearbyStacks() {
@@ -89,6 +161,26 @@ public class PlayerWatcher {
         return stackEntities;
     }
 
+    void countMovePacket(boolean sent) {
+        if (sent) {
+            movePacketsSent.increment();
+            return;
+        }
+        movePacketsSuppressed.increment();
+    }
+
+    public long getMovePacketsSent() {
+        return movePacketsSent.sum();
+    }
+
+    public long getMovePacketsSuppressed() {
+        return movePacketsSuppressed.sum();
+    }
+
+    public int getLastCandidates() {
+        return lastCandidates;
+    }
+
     public Player getPlayer() {
         return player;
     }
@@ -96,4 +188,9 @@ public class PlayerWatcher {
     public Collection<TagHandler> getTagHandlers() {
         return lastRange.values();
     }
+
+    public enum TagPriority {
+        NEAREST,
+        LARGEST
+    }
 }
@@ -0,0 +1,66 @@
+package uk.antiperson.stackmob.packets;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.hook.hooks.ProtocolLibHook;
+
+/**
+ * A tag which is shown using a text display riding the entity, so the client moves it along with the entity.
+ */
+public class ProtocolLibTextDisplay implements FakeArmorStand {
+
+    private final StackMob sm;
+    private ProtocolLibHook plh;
+    private int entityId;
+    private int ownerId;
+    private final Player player;
+    public ProtocolLibTextDisplay(StackMob sm, Player player) {
+        this.sm = sm;
+        this.player = player;
+    }
+
+    @Override
+    public void spawnFakeArmorStand(Entity owner, Location location, Component name) {
+        if (plh == null) {
+            plh = sm.getHookManager().getProtocolLibHook();
+        }
+        // passengers sit on top of the entity, so only the extra height needs to be added
+        float offset = (float) (location.getY() - owner.getLocation().getY() - owner.getHeight());
+        ownerId = owner.getEntityId();
+        entityId = plh.spawnTextDisplay(player, owner, location, name, offset);
+    }
+
+    @Override
+    public void updateName(Component newName) {
+        if (plh == null) {
+            plh = sm.getHookManager().getProtocolLibHook();
+        }
+        plh.updateTextDisplay(player, entityId, newName);
+    }
+
+    @Override
+    public void teleport(Location location) {
+        // the client moves the text display along with the entity
+    }
+
+    @Override
+    public void move(short deltaX, short deltaY, short deltaZ) {
+        // the client moves the text display along with the entity
+    }
+
+    @Override
+    public void removeFakeArmorStand() {
+        if (plh == null) {
+            plh = sm.getHookManager().getProtocolLibHook();
+        }
+        plh.removeTextDisplay(player, ownerId, entityId);
+    }
+
+    @Override
+    public boolean isMovedByClient() {
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package uk.antiperson.stackmob.packets;
+
+/**
+ * Works out the deltas sent in relative move packets, which are in 1/4096ths of a block.
+ */
+class RelativeMove {
+
+    private static final double SCALE = 4096;
+
+    private RelativeMove() {
+    }
+
+    /**
+     * Works out the delta between two coordinates on an axis. This is done the same way the server does, by encoding
+     * both coordinates before taking the difference, so rounding errors don't build up on the client.
+     * @param from the coordinate the client was last sent.
+     * @param to the coordinate to move to.
+     * @return the delta, which may not fit in a relative move packet.
+     */
+    static long delta(double from, double to) {
+        return encode(to) - encode(from);
+    }
+
+    /**
+     * Whether the given delta can be sent in a relative move packet, which holds each delta in a short.
+     * @param delta the delta.
+     * @return whether the delta can be sent in a relative move packet.
+     */
+    static boolean fits(long delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    private static long encode(double coordinate) {
+        return Math.round(coordinate * SCALE);
+    }
+}
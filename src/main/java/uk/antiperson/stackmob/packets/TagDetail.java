@@ -0,0 +1,100 @@
+package uk.antiperson.stackmob.packets;
+
+import org.bukkit.Location;
+import org.bukkit.util.Vector;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Splits the tags a player can see into bands by distance, so that tags which are further away are updated less often.
+ */
+public class TagDetail {
+
+    private final double[] distancesSquared;
+    private final int[] checkIntervals;
+    private final int[] moveIntervals;
+    private final double rayTraceDistanceSquared;
+    // the cosine of the view cone angle, tags with a lower cosine are behind the player
+    private final double viewConeCos;
+
+    private TagDetail(double[] distancesSquared, int[] checkIntervals, int[] moveIntervals, double rayTraceDistanceSquared, double viewConeCos) {
+        this.distancesSquared = distancesSquared;
+        this.checkIntervals = checkIntervals;
+        this.moveIntervals = moveIntervals;
+        this.rayTraceDistanceSquared = rayTraceDistanceSquared;
+        this.viewConeCos = viewConeCos;
+    }
+
+    /**
+     * Creates the bands from the given config values.
+     * @param distances the distance each band reaches out to.
+     * @param checkIntervals how many visibility checks tags in each band wait between updates.
+     * @param moveIntervals how often (in ticks) tags in each band are moved.
+     * @param rayTraceDistance the distance past which tags are not ray traced.
+     * @param viewCone the angle (in degrees) from where the player is looking past which tags are not ray traced.
+     * @param problems where to add a message if the config values can't be used.
+     * @return the bands, or null if the config values can't be used.
+     */
+    public static TagDetail of(List<Integer> distances, List<Integer> checkIntervals, List<Integer> moveIntervals, int rayTraceDistance, double viewCone, Collection<String> problems) {
+        int bands = distances.size();
+        if (bands == 0 || checkIntervals.size() != bands || moveIntervals.size() != bands) {
+            problems.add("display-name.nearby.level-of-detail needs the same amount of distances, check-intervals and move-intervals. It has been disabled.");
+            return null;
+        }
+        double[] distancesSquared = new double[bands];
+        int[] checks = new int[bands];
+        int[] moves = new int[bands];
+        for (int i = 0; i < bands; i++) {
+            distancesSquared[i] = (double) distances.get(i) * distances.get(i);
+            checks[i] = Math.max(1, checkIntervals.get(i));
+            moves[i] = Math.max(1, moveIntervals.get(i));
+        }
+        double viewConeCos = viewCone >= 180 ? -1 : Math.cos(Math.toRadians(viewCone));
+        return new TagDetail(distancesSquared, checks, moves, (double) rayTraceDistance * rayTraceDistance, viewConeCos);
+    }
+
+    /**
+     * Gets the band for a tag at the given distance. Tags further than the last band use the last band.
+     * @param distanceSquared the squared distance between the player and the tag.
+     * @return the band for the tag.
+     */
+    public int getBand(double distanceSquared) {
+        for (int i = 0; i < distancesSquared.length - 1; i++) {
+            if (distanceSquared <= distancesSquared[i]) {
+                return i;
+            }
+        }
+        return distancesSquared.length - 1;
+    }
+
+    public int getCheckInterval(int band) {
+        return checkIntervals[band];
+    }
+
+    public int getMoveInterval(int band) {
+        return moveIntervals[band];
+    }
+
+    public boolean isRayTraced(double distanceSquared) {
+        return distanceSquared <= rayTraceDistanceSquared;
+    }
+
+    /**
+     * Checks whether the given location is inside the cone in front of where the player is looking.
+     * @param eyeLocation the eye location of the player.
+     * @param location the location to check.
+     * @return whether the location is inside the view cone.
+     */
+    public boolean isInViewCone(Location eyeLocation, Location location) {
+        if (viewConeCos <= -1) {
+            return true;
+        }
+        Vector toLocation = location.toVector().subtract(eyeLocation.toVector());
+        double length = toLocation.length();
+        if (length == 0) {
+            return true;
+        }
+        return eyeLocation.getDirection().dot(toLocation) / length >= viewConeCos;
+    }
+}
@@ -2,6 +2,7 @@ package uk.antiperson.stackmob.packets;
 
 import net.kyori.adventure.text.Component;
 import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Mob;
 import org.bukkit.entity.Player;
@@ -10,39 +11,81 @@ import org.bukkit.util.Vector;
 import uk.antiperson.stackmob.StackMob;
 import uk.antiperson.stackmob.entity.StackEntity;
 import uk.antiperson.stackmob.hook.hooks.ProtocolLibHook;
+import uk.antiperson.stackmob.tasks.LoadSheddingTask;
 import uk.antiperson.stackmob.utils.Utilities;
 
 public class TagHandler {
 
-    private boolean tagVisible;
+    // the server also sends a full teleport every so often, in case the client has ended up somewhere else
+    private static final int RESYNC_MOVES = 400;
+
+    // tags are moved off the main thread but spawned and removed on it, so the methods that change these are synchronized
+    private volatile boolean tagVisible;
     private final StackEntity stackEntity;
     private final StackMob sm;
     private final Player player;
+    private final PlayerWatcher playerWatcher;
     private FakeArmorStand fakeArmorStand;
     private Component lastTag;
+    // the location of the armor stand that was last sent to the player
+    private double lastX;
+    private double lastY;
+    private double lastZ;
+    // how many times this tag has been checked and moved, used to skip updates for tags that are further away
+    private int checks;
+    private int moves;
+    // how many relative moves have been sent since the last absolute position
+    private int relativeMoves;
 
-    public TagHandler(StackMob sm, Player player, StackEntity stackEntity) {
+    public TagHandler(StackMob sm, PlayerWatcher playerWatcher, StackEntity stackEntity) {
         this.sm = sm;
         this.stackEntity = stackEntity;
-        this.player = player;
+        this.playerWatcher = playerWatcher;
+        this.player = playerWatcher.getPlayer();
     }
 
     public void init() {
         // force protocollib for 1.20.2
+        if (stackEntity.getEntityConfig().isUseTextDisplay()) {
+            this.fakeArmorStand = new ProtocolLibTextDisplay(sm, player);
+            return;
+        }
         this.fakeArmorStand = new ProtocolLibFakeArmorStand(sm, player);
     }
 
-    public void newlyInRange() {
+    public synchronized void newlyInRange() {
         tagVisible = true;
         if (stackEntity.getEntityConfig().isUseArmorStand()) {
-            fakeArmorStand.spawnFakeArmorStand(stackEntity.getEntity(), stackEntity.getEntity().getLocation(), stackEntity.getTag().getDisplayName(), stackEntity.getEntityConfig().getArmorstandOffset());
+            Location location = fakeArmorStand.adjustLocation(stackEntity.getEntity(), stackEntity.getEntityConfig().getArmorstandOffset());
+            lastTag = stackEntity.getTag().getDisplayName();
+            fakeArmorStand.spawnFakeArmorStand(stackEntity.getEntity(), location, lastTag);
+            setAbsoluteLocation(location);
             return;
         }
         sendPacket(stackEntity.getEntity(), player, true);
     }
 
-    public void playerInRange() {
-        if (stackEntity.getEntityConfig().isTagNearbyRayTrace() && !stackEntity.rayTracePlayer(player)) {
+    public synchronized void playerInRange() {
+        TagDetail tagDetail = stackEntity.getEntityConfig().getTagDetail();
+        if (tagDetail != null) {
+            Location eyeLocation = player.getEyeLocation();
+            Location location = stackEntity.getEntity().getLocation();
+            double distanceSquared = eyeLocation.distanceSquared(location);
+            if (checks++ % tagDetail.getCheckInterval(tagDetail.getBand(distanceSquared)) != 0) {
+                return;
+            }
+            if (!tagDetail.isRayTraced(distanceSquared)) {
+                if (!tagVisible) {
+                    newlyInRange();
+                }
+                return;
+            }
+            if (isRayTrace() && !tagDetail.isInViewCone(eyeLocation, location)) {
+                // the player isn't looking towards this tag, so whether it is blocked doesn't matter yet
+                return;
+            }
+        }
+        if (isRayTrace() && !stackEntity.rayTracePlayer(player)) {
             if (tagVisible) {
                 playerOutRange();
             }
@@ -53,11 +96,24 @@ public class TagHandler {
         }
     }
 
-    public void updateTag() {
+    private boolean isRayTrace() {
+        if (sm.getLoadSheddingTask().isActive(LoadSheddingTask.LoadStep.TAG_RAY_TRACE)) {
+            return false;
+        }
+        return stackEntity.getEntityConfig().isTagNearbyRayTrace();
+    }
+
+    public synchronized void updateTag() {
         if (!stackEntity.getEntityConfig().isUseArmorStand()) {
             return;
         }
-        fakeArmorStand.teleport(stackEntity.getEntity(), stackEntity.getEntityConfig().getArmorstandOffset());
+        if (!tagVisible) {
+            // the armor stand has been removed for this player, so there is nothing to move
+            return;
+        }
+        if (!fakeArmorStand.isMovedByClient() && shouldMove()) {
+            moveArmorStand(fakeArmorStand.adjustLocation(stackEntity.getEntity(), stackEntity.getEntityConfig().getArmorstandOffset()));
+        }
         if (stackEntity.getTag().getDisplayName().equals(lastTag)) {
             return;
         }
@@ -65,7 +121,62 @@ public class TagHandler {
         lastTag = stackEntity.getTag().getDisplayName();
     }
 
-    public void playerOutRange() {
+    private boolean shouldMove() {
+        TagDetail tagDetail = stackEntity.getEntityConfig().getTagDetail();
+        if (tagDetail == null) {
+            return true;
+        }
+        Location playerLocation = player.getLocation();
+        double distanceSquared = square(playerLocation.getX() - lastX) + square(playerLocation.getY() - lastY) + square(playerLocation.getZ() - lastZ);
+        if (moves++ % tagDetail.getMoveInterval(tagDetail.getBand(distanceSquared)) == 0) {
+            return true;
+        }
+        playerWatcher.countMovePacket(false);
+        return false;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private void moveArmorStand(Location location) {
+        // work out the deltas the same way the server does, so rounding errors don't build up on the client
+        long deltaX = RelativeMove.delta(lastX, location.getX());
+        long deltaY = RelativeMove.delta(lastY, location.getY());
+        long deltaZ = RelativeMove.delta(lastZ, location.getZ());
+        // relative move packets can only move an entity as far as a short can hold on each axis
+        if (!RelativeMove.fits(deltaX) || !RelativeMove.fits(deltaY) || !RelativeMove.fits(deltaZ) || relativeMoves >= RESYNC_MOVES) {
+            fakeArmorStand.teleport(location);
+            setAbsoluteLocation(location);
+            playerWatcher.countMovePacket(true);
+            return;
+        }
+        if (deltaX == 0 && deltaY == 0 && deltaZ == 0) {
+            playerWatcher.countMovePacket(false);
+            return;
+        }
+        fakeArmorStand.move((short) deltaX, (short) deltaY, (short) deltaZ);
+        setLastLocation(location);
+        relativeMoves++;
+        playerWatcher.countMovePacket(true);
+    }
+
+    /**
+     * Sets the location which the client was last sent an absolute position for. Relative moves are worked out from here.
+     * @param location the location which was sent.
+     */
+    private void setAbsoluteLocation(Location location) {
+        setLastLocation(location);
+        relativeMoves = 0;
+    }
+
+    private void setLastLocation(Location location) {
+        lastX = location.getX();
+        lastY = location.getY();
+        lastZ = location.getZ();
+    }
+
+    public synchronized void playerOutRange() {
         sendPacket(stackEntity.getEntity(), player, false);
         tagVisible = false;
         if (stackEntity.getEntityConfig().isUseArmorStand()) {
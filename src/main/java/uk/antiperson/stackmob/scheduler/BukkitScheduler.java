@@ -1,6 +1,7 @@
 package uk.antiperson.stackmob.scheduler;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
@@ -10,6 +11,11 @@ public class BukkitScheduler implements Scheduler {
         plugin.getServer().getScheduler().runTaskTimer(plugin, runnable, delay, period);
     }
 
+    @Override
+    public void runGlobalTask(Plugin plugin, Runnable runnable) {
+        plugin.getServer().getScheduler().runTask(plugin, runnable);
+    }
+
     @Override
     public void runTask(Plugin plugin, Location location, Runnable runnable) {
         plugin.getServer().getScheduler().runTask(plugin, runnable);
@@ -20,6 +26,11 @@ public class BukkitScheduler implements Scheduler {
         plugin.getServer().getScheduler().runTask(plugin, runnable);
     }
 
+    @Override
+    public void runRegionTask(Plugin plugin, World world, int chunkX, int chunkZ, Runnable runnable) {
+        plugin.getServer().getScheduler().runTask(plugin, runnable);
+    }
+
     @Override
     public void runTaskAsynchronously(Plugin plugin, Runnable runnable) {
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, runnable);
@@ -1,6 +1,7 @@
 package uk.antiperson.stackmob.scheduler;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
@@ -10,6 +11,11 @@ public class FoliaScheduler implements Scheduler {
         plugin.getServer().getGlobalRegionScheduler().runAtFixedRate(plugin, scheduledTask -> runnable.run(), (int) delay, (int) period);
     }
 
+    @Override
+    public void runGlobalTask(Plugin plugin, Runnable runnable) {
+        plugin.getServer().getGlobalRegionScheduler().run(plugin, scheduledTask -> runnable.run());
+    }
+
     @Override
     public void runTask(Plugin plugin, Location location, Runnable runnable) {
         plugin.getServer().getRegionScheduler().run(plugin, location, scheduledTask -> runnable.run());
@@ -20,6 +26,11 @@ public class FoliaScheduler implements Scheduler {
         entity.getScheduler().run(plugin, scheduledTask -> runnable.run(), () -> {});
     }
 
+    @Override
+    public void runRegionTask(Plugin plugin, World world, int chunkX, int chunkZ, Runnable runnable) {
+        plugin.getServer().getRegionScheduler().run(plugin, world, chunkX, chunkZ, scheduledTask -> runnable.run());
+    }
+
     @Override
     public void runTaskAsynchronously(Plugin plugin, Runnable runnable) {
         plugin.getServer().getAsyncScheduler().runNow(plugin, scheduledTask -> runnable.run());
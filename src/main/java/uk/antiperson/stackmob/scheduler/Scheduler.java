@@ -1,13 +1,16 @@
 package uk.antiperson.stackmob.scheduler;
 
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
 public interface Scheduler {
     void runGlobalTaskTimer(Plugin plugin, Runnable runnable, long delay, long period);
+    void runGlobalTask(Plugin plugin, Runnable runnable);
     void runTask(Plugin plugin, Location location, Runnable runnable);
     void runTask(Plugin plugin, Entity entity, Runnable runnable);
+    void runRegionTask(Plugin plugin, World world, int chunkX, int chunkZ, Runnable runnable);
     void runTaskAsynchronously(Plugin plugin, Runnable runnable);
     void runTaskLater(Plugin plugin, Entity entity, Runnable runnable, long delay);
 }
@@ -0,0 +1,56 @@
+package uk.antiperson.stackmob.tasks;
+
+/**
+ * Decides when the load shedding ladder should move up or down a step.
+ * The tick time has to stay above the activation limit (or below the restore limit) for the whole hold time before a
+ * step is taken, and the hold time starts again after each step, so a single slow or fast tick never changes the level.
+ */
+public class LoadHysteresis {
+
+    private long aboveSince;
+    private long belowSince;
+
+    /**
+     * Records a new sample of the tick time.
+     * @param mspt the average tick time, in milliseconds.
+     * @param activate the tick time at or above which the next step should be applied.
+     * @param restore the tick time at or below which the last step should be restored.
+     * @param holdTime how long (in nanoseconds) the tick time has to stay past a limit before a step is taken.
+     * @param now the current time, in nanoseconds.
+     * @param canApply whether there is another step which can be applied.
+     * @param canRestore whether there is a step which can be restored.
+     * @return the change which should be made to the ladder.
+     */
+    public Change sample(double mspt, double activate, double restore, long holdTime, long now, boolean canApply, boolean canRestore) {
+        if (mspt >= activate) {
+            belowSince = 0;
+            if (aboveSince == 0) {
+                aboveSince = now;
+            }
+            if (now - aboveSince >= holdTime && canApply) {
+                aboveSince = now;
+                return Change.APPLY;
+            }
+            return Change.NONE;
+        }
+        aboveSince = 0;
+        if (mspt > restore) {
+            belowSince = 0;
+            return Change.NONE;
+        }
+        if (belowSince == 0) {
+            belowSince = now;
+        }
+        if (now - belowSince >= holdTime && canRestore) {
+            belowSince = now;
+            return Change.RESTORE;
+        }
+        return Change.NONE;
+    }
+
+    public enum Change {
+        APPLY,
+        RESTORE,
+        NONE
+    }
+}
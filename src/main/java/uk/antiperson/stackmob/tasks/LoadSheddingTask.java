@@ -0,0 +1,155 @@
+package uk.antiperson.stackmob.tasks;
+
+import org.bukkit.Bukkit;
+import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.config.EntityConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reduces the amount of work done by the plugin when the server is struggling to keep up.
+ * The average tick time is sampled, and when it stays above the activation limit, the next step of the configured
+ * ladder is applied. When it stays below the restore limit, the last applied step is restored.
+ */
+public class LoadSheddingTask implements Runnable {
+
+    private static final int HISTORY_SIZE = 5;
+    private final StackMob sm;
+    private final Set<LoadStep> active;
+    private final LinkedList<String> history;
+    private List<LoadStep> ladder;
+    private int level;
+    private final LoadHysteresis hysteresis;
+    private double mspt;
+
+    public LoadSheddingTask(StackMob sm) {
+        this.sm = sm;
+        this.active = Collections.synchronizedSet(EnumSet.noneOf(LoadStep.class));
+        this.history = new LinkedList<>();
+        this.ladder = Collections.emptyList();
+        this.hysteresis = new LoadHysteresis();
+    }
+
+    /**
+     * Reads the ladder from the config, restoring any steps which have been applied.
+     */
+    public void reload() {
+        while (level > 0) {
+            restore("the config was reloaded");
+        }
+        List<LoadStep> steps = new ArrayList<>();
+        for (String name : sm.getMainConfig().getConfigFile().getStringList("load-shedding.ladder")) {
+            try {
+                steps.add(LoadStep.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                sm.getLogger().warning("Unknown load shedding step " + name + ", it will be ignored.");
+            }
+        }
+        ladder = steps;
+    }
+
+    @Override
+    public void run() {
+        EntityConfig config = sm.getMainConfig().getConfig();
+        if (!config.isLoadSheddingEnabled()) {
+            while (level > 0) {
+                restore("load shedding was disabled");
+            }
+            return;
+        }
+        mspt = Bukkit.getAverageTickTime();
+        long holdTime = TimeUnit.SECONDS.toNanos(config.getLoadSheddingHoldTime());
+        switch (hysteresis.sample(mspt, config.getLoadSheddingActivate(), config.getLoadSheddingRestore(), holdTime,
+                System.nanoTime(), level < ladder.size(), level > 0)) {
+            case APPLY:
+                apply();
+                break;
+            case RESTORE:
+                restore("the server has recovered");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void apply() {
+        LoadStep step = ladder.get(level++);
+        active.add(step);
+        log("Server is running at " + String.format("%.1f", mspt) + "ms per tick, applied load shedding step " + step + ".");
+    }
+
+    private void restore(String reason) {
+        LoadStep step = ladder.get(--level);
+        active.remove(step);
+        log("Restored load shedding step " + step + " because " + reason + " (" + String.format("%.1f", mspt) + "ms per tick.)");
+    }
+
+    private void log(String message) {
+        sm.getLogger().info(message);
+        synchronized (history) {
+            history.addFirst(message);
+            if (history.size() > HISTORY_SIZE) {
+                history.removeLast();
+            }
+        }
+    }
+
+    public boolean isActive(LoadStep step) {
+        return active.contains(step);
+    }
+
+    /**
+     * Gets the amount that the merge interval should be multiplied by.
+     * @return the amount that the merge interval should be multiplied by.
+     */
+    public int getMergeIntervalMultiplier() {
+        return isActive(LoadStep.MERGE_INTERVAL) ? Math.max(1, sm.getMainConfig().getConfig().getLoadSheddingMergeMultiplier()) : 1;
+    }
+
+    /**
+     * Gets the amount that the tag check interval should be multiplied by.
+     * @return the amount that the tag check interval should be multiplied by.
+     */
+    public int getTagCheckMultiplier() {
+        return isActive(LoadStep.TAG_CHECK_INTERVAL) ? Math.max(1, sm.getMainConfig().getConfig().getLoadSheddingTagCheckMultiplier()) : 1;
+    }
+
+    /**
+     * Gets how often (in ticks) armor stand tags should be moved.
+     * @return how often armor stand tags should be moved.
+     */
+    public int getTagMoveInterval() {
+        return isActive(LoadStep.TAG_MOVE_INTERVAL) ? Math.max(1, sm.getMainConfig().getConfig().getLoadSheddingTagMoveInterval()) : 1;
+    }
+
+    public double getMspt() {
+        return mspt;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public List<LoadStep> getLadder() {
+        return ladder;
+    }
+
+    public List<String> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    public enum LoadStep {
+        MERGE_INTERVAL,
+        TAG_RAY_TRACE,
+        TAG_CHECK_INTERVAL,
+        TAG_MOVE_INTERVAL
+    }
+}
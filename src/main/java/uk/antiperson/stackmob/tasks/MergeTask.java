@@ -1,53 +1,94 @@
 package uk.antiperson.stackmob.tasks;
 
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Mob;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
 import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.MergePlan;
 import uk.antiperson.stackmob.entity.StackEntity;
+import uk.antiperson.stackmob.entity.StackSnapshot;
 import uk.antiperson.stackmob.utils.Utilities;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
 
 public class MergeTask implements Runnable {
 
+    // stacks are grouped into squares of 8x8 chunks on Folia, which is never bigger than a region
+    private static final int REGION_SECTION_SHIFT = 3;
+    private static final int WHEEL_SIZE = 256;
+
     private final StackMob sm;
+    private long currentTick;
+    // each entity type is due at its own interval, the types which are due wait here until the mode can check them
+    private TimingWheel<EntityType> wheel;
+    private final Set<EntityType> pendingTypes;
+    private long lastPassTime;
+    // the sliced mode works through a snapshot of the registry, resuming from the cursor each tick
+    private List<StackEntity> sweep;
+    private int cursor;
+    private long sweepStartTick;
+    private long sweepTime;
+    private long lastSweepTicks;
+    private int lastTickProcessed;
+    // the planned mode makes the plan off the main thread, only one plan is made at a time
+    private volatile boolean planning;
+    private long snapshotTime;
+    private volatile long lastPlanTime;
 
     public MergeTask(StackMob sm) {
         this.sm = sm;
+        this.pendingTypes = EnumSet.noneOf(EntityType.class);
+        resetSchedule();
+    }
+
+    /**
+     * Schedules every entity type to be checked after its configured interval, discarding the current schedule.
+     */
+    public void resetSchedule() {
+        wheel = new TimingWheel<>(WHEEL_SIZE);
+        for (EntityType type : EntityType.values()) {
+            if (sm.getMainConfig().getConfig(type) == null) {
+                continue;
+            }
+            wheel.schedule(type, getInterval(type));
+        }
+    }
+
+    private long getInterval(EntityType type) {
+        int interval = Math.max(1, sm.getMainConfig().getConfig(type).getStackInterval());
+        return (long) interval * sm.getLoadSheddingTask().getMergeIntervalMultiplier();
     }
 
     private void checkEntity(StackEntity original, boolean checkHasMoved, double checkHasMovedDistance) {
-        if (original.isWaiting()) {
-            original.incrementWait();
+        if (!prepareEntity(original)) {
             return;
         }
-        if (!original.canStack()) {
-            if (!original.getEntity().isValid()) {
-                removeEntity(original);
-            }
+        if (!hasMoved(original, checkHasMoved, checkHasMovedDistance)) {
             return;
         }
-        if (checkHasMoved) {
-            if (original.getEntity().getWorld().equals(original.getLastLocation().getWorld())) {
-                if (!original.skipLastLocation()) {
-                    if (original.getEntity().getLocation().distance(original.getLastLocation()) < checkHasMovedDistance) {
-                        return;
-                    }
-                }
-            }
-            original.setLastLocation(original.getEntity().getLocation());
-        }
         boolean stackThresholdEnabled = original.getEntityConfig().getStackThresholdEnabled();
         Integer[] searchRadius = original.getEntityConfig().getStackRadius();
+        Location location = original.getEntity().getLocation();
         Set<StackEntity> matches = new HashSet<>();
-        for (Entity nearby : original.getEntity().getNearbyEntities(searchRadius[0], searchRadius[1], searchRadius[2])) {
-            if (!(nearby instanceof Mob)) {
+        for (StackEntity nearbyStack : sm.getEntityManager().getNearbyStacks(original, searchRadius)) {
+            if (Utilities.IS_FOLIA && !Bukkit.isOwnedByCurrentRegion(nearbyStack.getEntity())) {
+                // stacks near the edge of a region can't be touched from this region
                 continue;
             }
-            StackEntity nearbyStack = sm.getEntityManager().getStackEntity((LivingEntity) nearby);
-            if (nearbyStack == null) {
+            if (!nearbyStack.getEntity().isValid()) {
+                continue;
+            }
+            if (!sm.getEntityManager().isInRange(location, nearbyStack, searchRadius)) {
+                // the grid position of the nearby stack is only updated when it is checked, so it could have moved away
                 continue;
             }
             if (!nearbyStack.canStack()) {
@@ -73,10 +114,62 @@ public class MergeTask implements Runnable {
             return;
         }
         int threshold = original.getEntityConfig().getStackThreshold() - 1;
-        int size = matches.size();
-        if (size < threshold) {
+        if (matches.size() < threshold) {
             return;
         }
+        mergeMatches(original, matches);
+    }
+
+    /**
+     * Updates the waiting status and grid position of the given stack.
+     * @param original the stack to prepare.
+     * @return whether the stack is able to stack.
+     */
+    private boolean prepareEntity(StackEntity original) {
+        if (original.isWaiting()) {
+            original.incrementWait();
+            if (original.isWaiting()) {
+                // the wait count only goes down when the stack is checked, so keep it queued
+                sm.getEntityManager().markDirty(original);
+            }
+            sm.getEntityManager().updateChunk(original);
+            return false;
+        }
+        if (!original.canStack()) {
+            if (!original.getEntity().isValid()) {
+                removeEntity(original);
+                return false;
+            }
+            // full stacks are not moved in the grid, but still need to be found by the chunk they are in
+            sm.getEntityManager().updateChunk(original);
+            return false;
+        }
+        sm.getEntityManager().updateLocation(original);
+        return true;
+    }
+
+    private boolean hasMoved(StackEntity original, boolean checkHasMoved, double checkHasMovedDistance) {
+        if (!checkHasMoved) {
+            return true;
+        }
+        if (original.getEntity().getWorld().equals(original.getLastLocation().getWorld())) {
+            if (!original.skipLastLocation()) {
+                if (original.getEntity().getLocation().distance(original.getLastLocation()) < checkHasMovedDistance) {
+                    return false;
+                }
+            }
+        }
+        original.setLastLocation(original.getEntity().getLocation());
+        return true;
+    }
+
+    /**
+     * Merges the given single entities into the original, once the stack threshold has been reached.
+     * @param original the stack to merge the matches into.
+     * @param matches the single entities to merge.
+     */
+    private void mergeMatches(StackEntity original, Set<StackEntity> matches) {
+        int size = matches.size();
         for (StackEntity match : matches) {
             match.remove(false);
             removeEntity(match);
@@ -99,15 +192,314 @@ public class MergeTask implements Runnable {
 
     @Override
     public void run() {
-        boolean checkHasMoved = sm.getMainConfig().getConfig().isCheckHasMoved();
-        double checkHasMovedDistance = sm.getMainConfig().getConfig().getCheckHasMovedDistance();
-        for (StackEntity original : sm.getEntityManager().getStackEntities()) {
-            Runnable runnable = () -> checkEntity(original, checkHasMoved, checkHasMovedDistance);
+        long tick = currentTick++;
+        for (EntityType type : wheel.advance()) {
+            pendingTypes.add(type);
+            wheel.schedule(type, getInterval(type));
+        }
+        MergeMode mergeMode = sm.getMainConfig().getConfig().getMergeMode();
+        if (mergeMode == MergeMode.PLANNED && Utilities.IS_FOLIA) {
+            // entities can only be read by the region that owns them, so there is no single point to snapshot them from
+            mergeMode = MergeMode.FULL;
+        }
+        if (mergeMode != MergeMode.SLICED) {
+            sweep = null;
+            if (pendingTypes.isEmpty()) {
+                return;
+            }
+            if (mergeMode == MergeMode.PLANNED) {
+                if (!planning) {
+                    startPlan(takePendingTypes());
+                }
+                return;
+            }
+            long startTime = System.nanoTime();
+            processEntities(getStacksToCheck(takePendingTypes()));
+            lastPassTime = System.nanoTime() - startTime;
+            return;
+        }
+        if ((sweep == null || cursor >= sweep.size()) && !pendingTypes.isEmpty()) {
+            startSweep(tick, takePendingTypes());
+        }
+        if (sweep == null || cursor >= sweep.size()) {
+            lastTickProcessed = 0;
+            return;
+        }
+        long startTime = System.nanoTime();
+        long budget = (long) (sm.getMainConfig().getConfig().getSliceBudget() * 1000000);
+        int processed = 0;
+        List<StackEntity> batch = new ArrayList<>();
+        // at least one stack is checked each tick, so the sweep still moves on if the budget is too small
+        while (cursor < sweep.size() && (processed == 0 || System.nanoTime() - startTime < budget)) {
+            StackEntity original = sweep.get(cursor);
+            sweep.set(cursor, null);
+            cursor++;
+            if (sm.getEntityManager().getStackEntity(original.getEntity()) != original) {
+                continue;
+            }
             if (Utilities.IS_FOLIA) {
-                sm.getScheduler().runTask(sm, original.getEntity(), runnable);
+                batch.add(original);
             } else {
-                runnable.run();
+                processEntity(original);
+            }
+            processed++;
+        }
+        if (!batch.isEmpty()) {
+            processEntities(batch);
+        }
+        lastTickProcessed = processed;
+        sweepTime += System.nanoTime() - startTime;
+        if (cursor >= sweep.size()) {
+            lastPassTime = sweepTime;
+            lastSweepTicks = tick - sweepStartTick + 1;
+        }
+    }
+
+    private void startSweep(long tick, Set<EntityType> types) {
+        sweep = new ArrayList<>(getStacksToCheck(types));
+        cursor = 0;
+        sweepTime = 0;
+        sweepStartTick = tick;
+    }
+
+    private void startPlan(Set<EntityType> types) {
+        long startTime = System.nanoTime();
+        boolean checkHasMoved = sm.getMainConfig().getConfig().isCheckHasMoved();
+        double checkHasMovedDistance = sm.getMainConfig().getConfig().getCheckHasMovedDistance();
+        // every stack is still a candidate, but only the dirty stacks search for matches
+        Set<StackEntity> dirty = null;
+        if (sm.getMainConfig().getConfig().isDirtyTracking()) {
+            dirty = new HashSet<>(getStacksToCheck(types));
+        }
+        List<StackSnapshot> snapshots = new ArrayList<>();
+        // stacks of different types can never merge, so only the stacks of the due types are needed
+        for (StackEntity original : getStacks(types)) {
+            if (!prepareEntity(original)) {
+                continue;
             }
+            boolean check = dirty == null ? hasMoved(original, checkHasMoved, checkHasMovedDistance) : dirty.contains(original);
+            snapshots.add(new StackSnapshot(original, check));
         }
+        Integer[] cellSize = sm.getMainConfig().getConfig().getStackRadius();
+        snapshotTime = System.nanoTime() - startTime;
+        planning = true;
+        sm.getScheduler().runTaskAsynchronously(sm, () -> {
+            long planStartTime = System.nanoTime();
+            MergePlan plan;
+            try {
+                plan = MergePlan.create(snapshots, cellSize[0], cellSize[1], cellSize[2]);
+            } catch (RuntimeException e) {
+                sm.getLogger().log(Level.WARNING, "There was a problem planning which entities should merge.");
+                e.printStackTrace();
+                planning = false;
+                return;
+            }
+            lastPlanTime = System.nanoTime() - planStartTime;
+            sm.getScheduler().runGlobalTask(sm, () -> applyPlan(plan));
+        });
+    }
+
+    private void applyPlan(MergePlan plan) {
+        long startTime = System.nanoTime();
+        try {
+            for (MergePlan.Action action : plan.getActions()) {
+                StackEntity original = action.getOriginal();
+                if (!isStackable(original)) {
+                    continue;
+                }
+                if (action.isThreshold()) {
+                    applyThreshold(original, action.getMatches());
+                    continue;
+                }
+                StackEntity nearbyStack = action.getMatches().get(0);
+                if (!isStackable(nearbyStack) || !isInRange(original, nearbyStack) || !original.match(nearbyStack)) {
+                    continue;
+                }
+                final StackEntity removed = nearbyStack.merge(original, false);
+                if (removed != null) {
+                    removeEntity(removed);
+                }
+            }
+        } finally {
+            planning = false;
+        }
+        lastPassTime = snapshotTime + (System.nanoTime() - startTime);
+    }
+
+    private void applyThreshold(StackEntity original, List<StackEntity> planned) {
+        Set<StackEntity> matches = new HashSet<>();
+        for (StackEntity nearbyStack : planned) {
+            if (!isStackable(nearbyStack) || !nearbyStack.isSingle() || !isInRange(original, nearbyStack) || !original.match(nearbyStack)) {
+                continue;
+            }
+            matches.add(nearbyStack);
+        }
+        if (matches.size() < original.getEntityConfig().getStackThreshold() - 1) {
+            return;
+        }
+        mergeMatches(original, matches);
+    }
+
+    /**
+     * Checks that a stack from a plan is still registered and able to stack, since the plan may be out of date.
+     * @param stackEntity the stack to check.
+     * @return whether the stack is still able to stack.
+     */
+    private boolean isStackable(StackEntity stackEntity) {
+        if (sm.getEntityManager().getStackEntity(stackEntity.getEntity()) != stackEntity) {
+            return false;
+        }
+        return stackEntity.getEntity().isValid() && stackEntity.canStack();
+    }
+
+    /**
+     * Checks that two stacks from a plan are still within the merge range of each other, as they could have moved
+     * while the plan was being made.
+     * @param original the stack which is being merged into.
+     * @param nearbyStack the stack which is being merged.
+     * @return whether the stacks are still within range.
+     */
+    private boolean isInRange(StackEntity original, StackEntity nearbyStack) {
+        Integer[] searchRadius = original.getEntityConfig().getStackRadius();
+        return sm.getEntityManager().isInRange(original.getEntity().getLocation(), nearbyStack, searchRadius);
+    }
+
+    /**
+     * Gets the stacks which should be checked in this pass. When dirty tracking is enabled, this is only the stacks
+     * which have changed since they were last checked.
+     * @param types the entity types which are due to be checked.
+     * @return the stacks which should be checked.
+     */
+    private Collection<StackEntity> getStacksToCheck(Set<EntityType> types) {
+        if (!sm.getMainConfig().getConfig().isDirtyTracking()) {
+            return getStacks(types);
+        }
+        if (!Utilities.isPaper()) {
+            // there is no entity move event on spigot, so compare positions instead, which is still much cheaper than a search
+            for (StackEntity stackEntity : getStacks(types)) {
+                sm.getEntityManager().checkMoved(stackEntity, stackEntity.getEntity().getLocation());
+            }
+        }
+        return sm.getEntityManager().pollDirty(types);
+    }
+
+    private List<StackEntity> getStacks(Set<EntityType> types) {
+        List<StackEntity> stacks = new ArrayList<>();
+        for (EntityType type : types) {
+            stacks.addAll(sm.getEntityManager().getStackEntities(type));
+        }
+        return stacks;
+    }
+
+    private Set<EntityType> takePendingTypes() {
+        Set<EntityType> types = EnumSet.copyOf(pendingTypes);
+        pendingTypes.clear();
+        return types;
+    }
+
+    private void processEntity(StackEntity original) {
+        // moving stacks are already marked as dirty, so the location check is not needed
+        boolean checkHasMoved = sm.getMainConfig().getConfig().isCheckHasMoved() && !sm.getMainConfig().getConfig().isDirtyTracking();
+        double checkHasMovedDistance = sm.getMainConfig().getConfig().getCheckHasMovedDistance();
+        checkEntity(original, checkHasMoved, checkHasMovedDistance);
+    }
+
+    /**
+     * Checks the given stacks. On Folia, the stacks are grouped by area so that one task is scheduled on each
+     * region for the stacks that it owns, rather than one task for every stack.
+     * @param stackEntities the stacks to check.
+     */
+    private void processEntities(Collection<StackEntity> stackEntities) {
+        if (!Utilities.IS_FOLIA) {
+            for (StackEntity original : stackEntities) {
+                processEntity(original);
+            }
+            return;
+        }
+        Map<World, Map<Long, List<StackEntity>>> sections = new HashMap<>();
+        for (StackEntity original : stackEntities) {
+            Location location = original.getEntity().getLocation();
+            int sectionX = location.getBlockX() >> (4 + REGION_SECTION_SHIFT);
+            int sectionZ = location.getBlockZ() >> (4 + REGION_SECTION_SHIFT);
+            long section = ((long) sectionX << 32) | (sectionZ & 0xFFFFFFFFL);
+            sections.computeIfAbsent(location.getWorld(), world -> new HashMap<>())
+                    .computeIfAbsent(section, key -> new ArrayList<>()).add(original);
+        }
+        for (Map.Entry<World, Map<Long, List<StackEntity>>> worldEntry : sections.entrySet()) {
+            for (Map.Entry<Long, List<StackEntity>> entry : worldEntry.getValue().entrySet()) {
+                int chunkX = (int) (entry.getKey() >> 32) << REGION_SECTION_SHIFT;
+                int chunkZ = (int) (long) entry.getKey() << REGION_SECTION_SHIFT;
+                List<StackEntity> stacks = entry.getValue();
+                sm.getScheduler().runRegionTask(sm, worldEntry.getKey(), chunkX, chunkZ, () -> processSection(stacks));
+            }
+        }
+    }
+
+    private void processSection(List<StackEntity> stacks) {
+        for (StackEntity original : stacks) {
+            // the entity may have moved into another region since it was grouped
+            if (Bukkit.isOwnedByCurrentRegion(original.getEntity())) {
+                processEntity(original);
+                continue;
+            }
+            sm.getScheduler().runTask(sm, original.getEntity(), () -> processEntity(original));
+        }
+    }
+
+    /**
+     * Gets the time taken by the last merge pass, in nanoseconds.
+     * When using the sliced mode, this is the total time spent over all the ticks of the last sweep.
+     * When using the planned mode, this is the time taken to take the snapshots and apply the plan.
+     * On Folia, this only includes the time taken to schedule the checks.
+     * @return the time taken by the last merge pass, in nanoseconds.
+     */
+    public long getLastPassTime() {
+        return lastPassTime;
+    }
+
+    /**
+     * Gets the time taken to make the last merge plan off the main thread, in nanoseconds.
+     * @return the time taken to make the last merge plan, in nanoseconds.
+     */
+    public long getLastPlanTime() {
+        return lastPlanTime;
+    }
+
+    /**
+     * Gets the amount of ticks that the last sliced sweep was spread over.
+     * @return the amount of ticks that the last sliced sweep was spread over.
+     */
+    public long getLastSweepTicks() {
+        return lastSweepTicks;
+    }
+
+    /**
+     * Gets the amount of stacks that were checked in the last tick of the sliced mode.
+     * @return the amount of stacks that were checked in the last tick.
+     */
+    public int getLastTickProcessed() {
+        return lastTickProcessed;
+    }
+
+    /**
+     * Gets the progress of the current sliced sweep.
+     * @return the amount of stacks that have been checked in the current sweep.
+     */
+    public int getSweepProgress() {
+        return sweep == null ? 0 : cursor;
+    }
+
+    /**
+     * Gets the amount of stacks in the current sliced sweep.
+     * @return the amount of stacks in the current sweep.
+     */
+    public int getSweepSize() {
+        return sweep == null ? 0 : sweep.size();
+    }
+
+    public enum MergeMode {
+        FULL,
+        SLICED,
+        PLANNED
     }
 }
@@ -1,34 +1,140 @@
 package uk.antiperson.stackmob.tasks;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import uk.antiperson.stackmob.StackMob;
+import uk.antiperson.stackmob.entity.StackEntity;
 import uk.antiperson.stackmob.packets.PlayerWatcher;
 import uk.antiperson.stackmob.utils.Utilities;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class TagCheckTask implements Runnable {
 
     private final StackMob sm;
+    private long runs;
     public TagCheckTask(StackMob sm) {
         this.sm = sm;
     }
 
     @Override
     public void run() {
+        if (runs++ % sm.getLoadSheddingTask().getTagCheckMultiplier() != 0) {
+            return;
+        }
+        if (Utilities.IS_FOLIA) {
+            // players and entities can be owned by different regions, so each player has to look for itself
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                sm.getScheduler().runTask(sm, player, () -> {
+                    PlayerWatcher playerWatcher = sm.getPlayerManager().createPlayerWatcher(player);
+                    playerWatcher.checkPlayer();
+                });
+            }
+            return;
+        }
+        Integer[] range = sm.getMainConfig().getConfig().getTagNearbyRadius();
+        List<Viewer> viewers = new ArrayList<>();
+        // group the players by the chunk they are in, so that the stacks in each chunk are only looked at once
+        Map<World, Map<Long, List<Viewer>>> viewersByChunk = new HashMap<>();
         for (Player player : Bukkit.getOnlinePlayers()) {
-            Runnable runnable = () -> {
-                PlayerWatcher playerWatcher = sm.getPlayerManager().createPlayerWatcher(player);
-                playerWatcher.checkPlayer();
-            };
-
-            if (Utilities.IS_FOLIA) {
-                sm.getScheduler().runTask(sm, player, runnable);
-            } else {
-                runnable.run();
+            Viewer viewer = new Viewer(sm.getPlayerManager().createPlayerWatcher(player), player.getLocation());
+            viewers.add(viewer);
+            viewersByChunk.computeIfAbsent(player.getWorld(), world -> new HashMap<>())
+                    .computeIfAbsent(chunkKey(viewer.chunkX, viewer.chunkZ), key -> new ArrayList<>()).add(viewer);
+        }
+        // one extra chunk, as the range may only cover part of the chunks at the edge
+        int chunkRangeX = (range[0] >> 4) + 1;
+        int chunkRangeZ = (range[2] >> 4) + 1;
+        for (Map.Entry<World, Map<Long, List<Viewer>>> entry : viewersByChunk.entrySet()) {
+            World world = entry.getKey();
+            Map<Long, List<Viewer>> worldViewers = entry.getValue();
+            Set<Long> checked = new HashSet<>();
+            for (List<Viewer> bucket : worldViewers.values()) {
+                Viewer first = bucket.get(0);
+                for (int cx = first.chunkX - chunkRangeX; cx <= first.chunkX + chunkRangeX; cx++) {
+                    for (int cz = first.chunkZ - chunkRangeZ; cz <= first.chunkZ + chunkRangeZ; cz++) {
+                        if (!checked.add(chunkKey(cx, cz))) {
+                            continue;
+                        }
+                        checkChunk(world, cx, cz, worldViewers, chunkRangeX, chunkRangeZ, range);
+                    }
+                }
             }
         }
+        for (Viewer viewer : viewers) {
+            viewer.playerWatcher.checkPlayer(viewer.nearby);
+        }
     }
 
+    private void checkChunk(World world, int chunkX, int chunkZ, Map<Long, List<Viewer>> worldViewers, int chunkRangeX, int chunkRangeZ, Integer[] range) {
+        Iterable<StackEntity> stacks = sm.getEntityManager().getStackEntities(world, chunkX, chunkZ);
+        if (!stacks.iterator().hasNext()) {
+            return;
+        }
+        List<Viewer> candidates = new ArrayList<>();
+        for (int cx = chunkX - chunkRangeX; cx <= chunkX + chunkRangeX; cx++) {
+            for (int cz = chunkZ - chunkRangeZ; cz <= chunkZ + chunkRangeZ; cz++) {
+                List<Viewer> bucket = worldViewers.get(chunkKey(cx, cz));
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+        }
+        for (StackEntity stackEntity : stacks) {
+            if (stackEntity.getEntityConfig().getTagMode() != StackEntity.TagMode.NEARBY) {
+                continue;
+            }
+            Location location = stackEntity.getEntity().getLocation();
+            // the chunk index is otherwise only updated when a stack is checked or noticed moving, so keep it up to date
+            // for the stacks which players are near, as these are the ones which could walk into range
+            sm.getEntityManager().updateChunk(stackEntity, location);
+            if (stackEntity.getSize() <= stackEntity.getEntityConfig().getTagThreshold()) {
+                continue;
+            }
+            for (Viewer viewer : candidates) {
+                if (Math.abs(location.getX() - viewer.x) > range[0]) {
+                    continue;
+                }
+                if (Math.abs(location.getY() - viewer.y) > range[1]) {
+                    continue;
+                }
+                if (Math.abs(location.getZ() - viewer.z) > range[2]) {
+                    continue;
+                }
+                viewer.nearby.add(stackEntity);
+            }
+        }
+    }
 
+    private static long chunkKey(int x, int z) {
+        return (long) x & 0xFFFFFFFFL | ((long) z & 0xFFFFFFFFL) << 32;
+    }
 
+    private static class Viewer {
+
+        private final PlayerWatcher playerWatcher;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final int chunkX;
+        private final int chunkZ;
+        private final Set<StackEntity> nearby;
+
+        private Viewer(PlayerWatcher playerWatcher, Location location) {
+            this.playerWatcher = playerWatcher;
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.chunkX = location.getBlockX() >> 4;
+            this.chunkZ = location.getBlockZ() >> 4;
+            this.nearby = new HashSet<>();
+        }
+    }
 }
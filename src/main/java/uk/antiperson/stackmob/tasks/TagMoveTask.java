@@ -12,12 +12,16 @@ import java.util.ArrayList;
 public class TagMoveTask extends BukkitRunnable {
 
     private final StackMob sm;
+    private long runs;
     public TagMoveTask(StackMob sm) {
         this.sm = sm;
     }
 
     @Override
     public void run() {
+        if (runs++ % sm.getLoadSheddingTask().getTagMoveInterval() != 0) {
+            return;
+        }
         ArrayList<Player> playerArrayList = new ArrayList<>(Bukkit.getOnlinePlayers());
         sm.getScheduler().runTaskAsynchronously(sm, () -> {
             for (Player player : playerArrayList) {
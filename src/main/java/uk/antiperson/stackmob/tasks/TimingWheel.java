@@ -0,0 +1,71 @@
+package uk.antiperson.stackmob.tasks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A hashed timing wheel, which lets a single task keep track of many items that are each due at their own interval.
+ * Each tick, only the items in the current slot are looked at, rather than every scheduled item.
+ * @param <T> the type of item which is scheduled.
+ */
+public class TimingWheel<T> {
+
+    private final List<List<Entry<T>>> slots;
+    private int cursor;
+
+    public TimingWheel(int size) {
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedules the given item to be due after the given amount of ticks.
+     * @param item the item to schedule.
+     * @param delay the amount of ticks until the item is due. This is at least one.
+     */
+    public void schedule(T item, long delay) {
+        delay = Math.max(1, delay);
+        int size = slots.size();
+        int slot = (int) ((cursor + delay) % size);
+        slots.get(slot).add(new Entry<>(item, (delay - 1) / size));
+    }
+
+    /**
+     * Moves the wheel on by a tick, removing and returning the items which are now due.
+     * @return the items which are now due.
+     */
+    public List<T> advance() {
+        cursor = (cursor + 1) % slots.size();
+        List<Entry<T>> slot = slots.get(cursor);
+        if (slot.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        List<T> due = new ArrayList<>();
+        Iterator<Entry<T>> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.rounds > 0) {
+                entry.rounds--;
+                continue;
+            }
+            iterator.remove();
+            due.add(entry.item);
+        }
+        return due;
+    }
+
+    private static class Entry<T> {
+
+        private final T item;
+        // the amount of times the wheel needs to go round before this item is due
+        private long rounds;
+
+        private Entry(T item, long rounds) {
+            this.item = item;
+            this.rounds = rounds;
+        }
+    }
+}
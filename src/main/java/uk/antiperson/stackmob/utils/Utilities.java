@@ -197,6 +197,7 @@ public class Utilities {
         V1_18("1.18"),
         V1_18_2("1.18.2"),
         V1_19_4("1.19.4"),
+        V1_20_2("1.20.2"),
         V1_20_4("1.20.4"),
         V1_20_6("1.20.6"),
         V1_21("1.21");
@@ -0,0 +1,65 @@
+package uk.antiperson.stackmob.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnumListTest {
+
+    private enum Colour {
+        RED,
+        GREEN,
+        BLUE
+    }
+
+    @Test
+    void containsListedValues() {
+        List<String> problems = new ArrayList<>();
+        EnumList<Colour> list = EnumList.of(Colour.class, List.of("RED", "BLUE"), false, "colours", problems);
+        assertTrue(list.contains(Colour.RED));
+        assertFalse(list.contains(Colour.GREEN));
+        assertTrue(list.contains(Colour.BLUE));
+        assertTrue(problems.isEmpty());
+    }
+
+    @Test
+    void invertedContainsValuesNotListed() {
+        List<String> problems = new ArrayList<>();
+        EnumList<Colour> list = EnumList.of(Colour.class, List.of("RED"), true, "colours", problems);
+        assertFalse(list.contains(Colour.RED));
+        assertTrue(list.contains(Colour.GREEN));
+        assertTrue(list.contains(Colour.BLUE));
+    }
+
+    @Test
+    void emptyList() {
+        List<String> problems = new ArrayList<>();
+        EnumList<Colour> list = EnumList.of(Colour.class, List.of(), false, "colours", problems);
+        EnumList<Colour> inverted = EnumList.of(Colour.class, List.of(), true, "colours", problems);
+        for (Colour colour : Colour.values()) {
+            assertFalse(list.contains(colour));
+            assertTrue(inverted.contains(colour));
+        }
+    }
+
+    @Test
+    void neverContainsNull() {
+        EnumList<Colour> inverted = EnumList.of(Colour.class, List.of(), true, "colours", new ArrayList<>());
+        assertFalse(inverted.contains(null));
+    }
+
+    @Test
+    void unknownValuesAreReportedAndIgnored() {
+        List<String> problems = new ArrayList<>();
+        EnumList<Colour> list = EnumList.of(Colour.class, List.of("RED", "PURPLE", 5), false, "colours", problems);
+        assertTrue(list.contains(Colour.RED));
+        assertFalse(list.contains(Colour.GREEN));
+        assertEquals(List.of("Unknown value 'PURPLE' in list colours. It will be ignored.",
+                "Unknown value '5' in list colours. It will be ignored."), problems);
+    }
+}
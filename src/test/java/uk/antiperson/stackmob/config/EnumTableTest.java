@@ -0,0 +1,58 @@
+package uk.antiperson.stackmob.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EnumTableTest {
+
+    private enum Cause {
+        FALL,
+        FIRE,
+        LAVA
+    }
+
+    private enum Reason {
+        NATURAL,
+        SPAWNER
+    }
+
+    @Test
+    void everyPairIsResolved() {
+        EnumTable<Cause, Reason, String> table = EnumTable.of(Cause.class, Reason.class, (cause, reason) -> cause + "/" + reason);
+        for (Cause cause : Cause.values()) {
+            for (Reason reason : Reason.values()) {
+                assertEquals(cause + "/" + reason, table.get(cause, reason));
+            }
+        }
+    }
+
+    @Test
+    void unknownConstantsHaveTheirOwnSlot() {
+        EnumTable<Cause, Reason, String> table = EnumTable.of(Cause.class, Reason.class, (cause, reason) -> cause + "/" + reason);
+        assertEquals("null/SPAWNER", table.get(null, Reason.SPAWNER));
+        assertEquals("FIRE/null", table.get(Cause.FIRE, null));
+        assertEquals("null/null", table.get(null, null));
+    }
+
+    @Test
+    void nullValuesAreKept() {
+        EnumTable<Cause, Reason, String> table = EnumTable.of(Cause.class, Reason.class,
+                (cause, reason) -> reason == Reason.SPAWNER ? null : "kept");
+        assertNull(table.get(Cause.FALL, Reason.SPAWNER));
+        assertEquals("kept", table.get(Cause.FALL, Reason.NATURAL));
+        assertEquals("kept", table.get(Cause.FALL, null));
+    }
+
+    @Test
+    void rowsWhichAreTheSameStillGiveTheirValues() {
+        // only fire is listed, so every other row is the same and is shared
+        EnumTable<Cause, Reason, String> table = EnumTable.of(Cause.class, Reason.class,
+                (cause, reason) -> cause == Cause.FIRE ? "listed" : "default");
+        assertEquals("default", table.get(Cause.FALL, Reason.NATURAL));
+        assertEquals("listed", table.get(Cause.FIRE, Reason.NATURAL));
+        assertEquals("default", table.get(Cause.LAVA, Reason.SPAWNER));
+        assertEquals("default", table.get(null, null));
+    }
+}
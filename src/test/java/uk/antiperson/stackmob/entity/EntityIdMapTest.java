@@ -0,0 +1,96 @@
+package uk.antiperson.stackmob.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityIdMapTest {
+
+    @Test
+    void putAndGet() {
+        EntityIdMap<String> map = new EntityIdMap<>();
+        assertNull(map.put(5, "a"));
+        assertEquals("a", map.get(5));
+        assertTrue(map.containsKey(5));
+        assertFalse(map.containsKey(6));
+        assertEquals("a", map.put(5, "b"));
+        assertEquals("b", map.get(5));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void removeOnlyRemovesGivenValue() {
+        EntityIdMap<String> map = new EntityIdMap<>();
+        String value = "a";
+        map.put(1, value);
+        assertFalse(map.remove(1, new String("a")));
+        assertFalse(map.remove(2, value));
+        assertSame(value, map.get(1));
+        assertTrue(map.remove(1, value));
+        assertNull(map.get(1));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void negativeAndZeroIds() {
+        EntityIdMap<String> map = new EntityIdMap<>();
+        map.put(0, "zero");
+        map.put(-1, "minus one");
+        map.put(Integer.MIN_VALUE, "min");
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("min", map.get(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void growsAndShrinks() {
+        EntityIdMap<Integer> map = new EntityIdMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(10_000, map.size());
+        assertEquals(10_000, new HashSet<>(map.values()).size());
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 100 != 0) {
+                assertTrue(map.remove(i, map.get(i)));
+            }
+        }
+        assertEquals(100, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 100 == 0 ? Integer.valueOf(i) : null, map.get(i));
+        }
+    }
+
+    @Test
+    void matchesHashMap() {
+        Random random = new Random(12);
+        EntityIdMap<Integer> map = new EntityIdMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // a small range of keys, so that clusters form and are broken up by removals
+            int key = random.nextInt(2000) * (random.nextBoolean() ? 1 : 64);
+            if (random.nextInt(3) == 0) {
+                Integer value = expected.get(key);
+                assertEquals(expected.remove(key) != null, map.remove(key, value));
+            } else {
+                Integer value = random.nextInt();
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+    }
+}
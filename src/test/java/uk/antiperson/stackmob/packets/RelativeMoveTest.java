@@ -0,0 +1,49 @@
+package uk.antiperson.stackmob.packets;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelativeMoveTest {
+
+    @Test
+    void deltaIsInFractionsOfABlock() {
+        assertEquals(4096, RelativeMove.delta(0, 1));
+        assertEquals(-2048, RelativeMove.delta(10, 9.5));
+        assertEquals(0, RelativeMove.delta(3.25, 3.25));
+    }
+
+    @Test
+    void fitsOnlyDeltasAShortCanHold() {
+        assertTrue(RelativeMove.fits(Short.MAX_VALUE));
+        assertTrue(RelativeMove.fits(Short.MIN_VALUE));
+        assertFalse(RelativeMove.fits(Short.MAX_VALUE + 1));
+        assertFalse(RelativeMove.fits(Short.MIN_VALUE - 1));
+        // a relative move can go just under 8 blocks each way
+        assertTrue(RelativeMove.fits(RelativeMove.delta(100, 107.99)));
+        assertFalse(RelativeMove.fits(RelativeMove.delta(100, 108)));
+        assertTrue(RelativeMove.fits(RelativeMove.delta(100, 92)));
+        assertFalse(RelativeMove.fits(RelativeMove.delta(100, 91.99)));
+    }
+
+    @Test
+    void deltasDoNotDrift() {
+        // the client adds each delta to where it thinks the entity is, so after many small moves it should end up
+        // exactly where the last encoded position is
+        Random random = new Random(4);
+        double position = 12345.678;
+        long client = Math.round(position * 4096);
+        for (int i = 0; i < 100_000; i++) {
+            double next = position + (random.nextDouble() - 0.5) * 0.3;
+            long delta = RelativeMove.delta(position, next);
+            assertTrue(RelativeMove.fits(delta));
+            client += delta;
+            position = next;
+        }
+        assertEquals(Math.round(position * 4096), client);
+    }
+}
@@ -0,0 +1,81 @@
+package uk.antiperson.stackmob.tasks;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoadHysteresisTest {
+
+    private static final double ACTIVATE = 45;
+    private static final double RESTORE = 35;
+    private static final long HOLD = 10;
+
+    private LoadHysteresis hysteresis;
+
+    @BeforeEach
+    void setUp() {
+        hysteresis = new LoadHysteresis();
+    }
+
+    private LoadHysteresis.Change sample(double mspt, long now) {
+        return hysteresis.sample(mspt, ACTIVATE, RESTORE, HOLD, now, true, true);
+    }
+
+    @Test
+    void appliesOnlyAfterHoldTime() {
+        assertEquals(LoadHysteresis.Change.NONE, sample(50, 1));
+        assertEquals(LoadHysteresis.Change.NONE, sample(50, 10));
+        assertEquals(LoadHysteresis.Change.APPLY, sample(50, 11));
+    }
+
+    @Test
+    void holdTimeStartsAgainAfterApplying() {
+        sample(50, 1);
+        assertEquals(LoadHysteresis.Change.APPLY, sample(50, 11));
+        assertEquals(LoadHysteresis.Change.NONE, sample(50, 20));
+        assertEquals(LoadHysteresis.Change.APPLY, sample(50, 21));
+    }
+
+    @Test
+    void dropBelowActivateResetsHoldTime() {
+        sample(50, 1);
+        sample(40, 5);
+        assertEquals(LoadHysteresis.Change.NONE, sample(50, 11));
+        assertEquals(LoadHysteresis.Change.APPLY, sample(50, 21));
+    }
+
+    @Test
+    void restoresOnlyAfterHoldTime() {
+        assertEquals(LoadHysteresis.Change.NONE, sample(20, 1));
+        assertEquals(LoadHysteresis.Change.NONE, sample(20, 10));
+        assertEquals(LoadHysteresis.Change.RESTORE, sample(20, 11));
+        assertEquals(LoadHysteresis.Change.NONE, sample(20, 12));
+        assertEquals(LoadHysteresis.Change.RESTORE, sample(20, 21));
+    }
+
+    @Test
+    void noChangeBetweenLimits() {
+        for (long now = 1; now < 100; now++) {
+            assertEquals(LoadHysteresis.Change.NONE, sample(40, now));
+        }
+    }
+
+    @Test
+    void riseAboveRestoreResetsHoldTime() {
+        sample(20, 1);
+        sample(40, 5);
+        assertEquals(LoadHysteresis.Change.NONE, sample(20, 11));
+        assertEquals(LoadHysteresis.Change.RESTORE, sample(20, 21));
+    }
+
+    @Test
+    void limitsOfLadderAreRespected() {
+        hysteresis.sample(50, ACTIVATE, RESTORE, HOLD, 1, false, true);
+        assertEquals(LoadHysteresis.Change.NONE, hysteresis.sample(50, ACTIVATE, RESTORE, HOLD, 20, false, true));
+        assertEquals(LoadHysteresis.Change.APPLY, hysteresis.sample(50, ACTIVATE, RESTORE, HOLD, 21, true, true));
+        hysteresis.sample(20, ACTIVATE, RESTORE, HOLD, 30, true, false);
+        assertEquals(LoadHysteresis.Change.NONE, hysteresis.sample(20, ACTIVATE, RESTORE, HOLD, 50, true, false));
+        assertEquals(LoadHysteresis.Change.RESTORE, hysteresis.sample(20, ACTIVATE, RESTORE, HOLD, 51, true, true));
+    }
+}
@@ -0,0 +1,64 @@
+package uk.antiperson.stackmob.tasks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final int SIZE = 8;
+
+    @Test
+    void itemIsDueAfterItsDelay() {
+        for (int delay = 1; delay <= SIZE * 3 + 1; delay++) {
+            TimingWheel<String> wheel = new TimingWheel<>(SIZE);
+            wheel.schedule("item", delay);
+            for (int tick = 1; tick < delay; tick++) {
+                assertTrue(wheel.advance().isEmpty(), "due early with delay " + delay + " at tick " + tick);
+            }
+            assertEquals(List.of("item"), wheel.advance(), "not due with delay " + delay);
+            for (int tick = 0; tick < SIZE * 4; tick++) {
+                assertTrue(wheel.advance().isEmpty(), "due twice with delay " + delay);
+            }
+        }
+    }
+
+    @Test
+    void delayIsAtLeastOneTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(SIZE);
+        wheel.schedule("zero", 0);
+        wheel.schedule("negative", -5);
+        assertEquals(List.of("zero", "negative"), wheel.advance());
+    }
+
+    @Test
+    void delayIsRelativeToCurrentTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(SIZE);
+        for (int tick = 0; tick < 5; tick++) {
+            wheel.advance();
+        }
+        wheel.schedule("item", SIZE + 2);
+        for (int tick = 1; tick < SIZE + 2; tick++) {
+            assertTrue(wheel.advance().isEmpty());
+        }
+        assertEquals(List.of("item"), wheel.advance());
+    }
+
+    @Test
+    void itemsInSameSlotAreDueInTheirOwnRound() {
+        TimingWheel<String> wheel = new TimingWheel<>(SIZE);
+        wheel.schedule("later", SIZE + 3);
+        wheel.schedule("sooner", 3);
+        for (int tick = 1; tick < 3; tick++) {
+            wheel.advance();
+        }
+        assertEquals(List.of("sooner"), wheel.advance());
+        for (int tick = 4; tick < SIZE + 3; tick++) {
+            assertTrue(wheel.advance().isEmpty());
+        }
+        assertEquals(List.of("later"), wheel.advance());
+    }
+}